@@ -0,0 +1,69 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.DataJpaApplication;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 스프링 컨텍스트 - 벤치마크마다 별도의 in-memory H2 DB를 띄운다.
+ */
+public final class BenchmarkApplication {
+
+    public static final int TEAM_COUNT = 10;
+    public static final int AGE_COUNT = 10;
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, String... extraArgs) {
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        args.add("--spring.main.banner-mode=off");
+        args.add("--logging.level.root=warn");
+        args.add("--logging.level.org.hibernate.SQL=warn");
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    public static TransactionTemplate transactionTemplate(ConfigurableApplicationContext context, boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        template.setReadOnly(readOnly);
+        return template;
+    }
+
+    /**
+     * 팀 TEAM_COUNT개, 회원 size명 - 나이는 0 ~ AGE_COUNT-1 로 고르게 분포
+     */
+    public static void loadMembers(ConfigurableApplicationContext context, int size) {
+        TeamRepository teamRepository = context.getBean(TeamRepository.class);
+        MemberRepository memberRepository = context.getBean(MemberRepository.class);
+
+        List<Team> teams = transactionTemplate(context, false).execute(status -> {
+            List<Team> saved = new ArrayList<>();
+            for (int i = 0; i < TEAM_COUNT; i++) {
+                saved.add(teamRepository.save(new Team("team" + i)));
+            }
+            return saved;
+        });
+
+        List<Member> members = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Member member = new Member("member" + i, i % AGE_COUNT);
+            member.setTeam(teams.get(i % TEAM_COUNT)); // changeTeam은 team.members에도 add 하므로 데이터 적재에는 setTeam
+            members.add(member);
+        }
+        memberRepository.saveAllBatched(members, 1000);
+    }
+}
@@ -0,0 +1,122 @@
+package com.study.datajpa.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.datajpa.controller.MemberController;
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 목록 응답(json 바이트)을 만드는 비용 - HTTP는 빼고 조회 + 직렬화만 잰다.
+ * Page<Member>는 그대로 직렬화할 수 없어서(지연로딩 프록시, team.members 순환 참조) 트랜잭션 안에서 dto로 바꿔서 직렬화한다.
+ * 여러 스레드(@Threads)로 동시에 호출해서 부하 상황의 처리량을 비교한다. (-prof gc로 요청당 할당량 비교)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class MemberApiBenchmark {
+
+    static final Pageable PAGE = PageRequest.of(0, 100, Sort.by(Sort.Direction.DESC, "userName"));
+
+    @Param({"100000"})
+    public int datasetSize;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberController memberController;
+    ObjectMapper objectMapper;
+    TransactionTemplate readTx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("api" + datasetSize);
+        memberRepository = context.getBean(MemberRepository.class);
+        memberController = context.getBean(MemberController.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        readTx = BenchmarkApplication.transactionTemplate(context, true);
+        BenchmarkApplication.loadMembers(context, datasetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entityPage() {
+        return readTx.execute(status -> {
+            Page<Member> page = memberRepository.findByAge(0, PAGE);
+            return write(page.map(m -> new MemberDto(m.getId(), m.getUserName(), m.getTeam().getName())));
+        });
+    }
+
+    @Benchmark
+    public byte[] dtoPage() {
+        return write(memberController.list(0, PAGE));
+    }
+
+    @Benchmark
+    public byte[] dtoCursor() {
+        return write(memberController.cursor(0, null, PAGE.getPageSize()));
+    }
+
+    /**
+     * 전체 내보내기 - 목록을 다 만든 뒤 직렬화 vs 커서에서 읽으면서 바로 쓰기
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public byte[] exportList() {
+        return readTx.execute(status -> {
+            List<MemberDto> members = memberRepository.findMemberDto();
+            return write(members);
+        });
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public long exportStreaming() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        memberController.writeMembers(out);
+        return out.count;
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 응답 대신 바이트 수만 센다.
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.service.CsvImportResult;
+import com.study.datajpa.service.MemberCsvImportService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 수백만 줄 회원 CSV 적재 - 한 번 실행에 걸리는 시간 + 적재 건수, 최대 힙(MB)을 보조 지표(@AuxCounters)로 보고
+ * rows/sec 은 rows / 점수(초)로 계산한다. 힙이 파일 크기와 무관하게 일정한지는 -prof gc 와 peakHeapMb 로 확인한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class MemberCsvImportBenchmark {
+
+    @Param({"1000000", "3000000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    ConfigurableApplicationContext context;
+    MemberCsvImportService importService;
+    MemberRepository memberRepository;
+    Path csv;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        context = BenchmarkApplication.start("csv", "--app.import.batch-size=" + batchSize);
+        importService = context.getBean(MemberCsvImportService.class);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        csv = Files.createTempFile("members", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("userName,age,teamName\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("member" + i + "," + (i % BenchmarkApplication.AGE_COUNT)
+                        + ",team" + (i % BenchmarkApplication.TEAM_COUNT) + "\n");
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        context.close();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public CsvImportResult importMembers(ImportCounters counters) {
+        CsvImportResult result = importService.importMembers(csv);
+        counters.importedRows += result.getRows();
+        counters.peakHeapMb = Math.max(counters.peakHeapMb, result.getPeakHeapBytes() / (1024.0 * 1024.0));
+        return result;
+    }
+
+    /**
+     * 결과 표에 importMembers:importedRows, importMembers:peakHeapMb 로 같이 나온다.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ImportCounters {
+        public long importedRows;
+        public double peakHeapMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            importedRows = 0;
+            peakHeapMb = 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.entity.Member;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 영속성 컨텍스트에 엔티티가 많을 때 flush 비용 - 바이트코드 향상 유무 비교
+ * ./gradlew jmh -PjmhInclude=MemberFlushBenchmark             (향상 o)
+ * ./gradlew jmh -PjmhInclude=MemberFlushBenchmark -PnoEnhance (향상 x - 스냅샷 비교)
+ *
+ * 엔티티 로딩은 측정에서 빼고(Level.Invocation) flush 한 번만 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class MemberFlushBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberFlushBenchmark.class); // jmh 소스셋에는 lombok이 없다.
+
+    @Param({"10000", "100000"})
+    public int managedEntities;
+
+    @Param({"0", "100"})
+    public int dirtyEntities; // 변경할 엔티티 수 - 0이면 변경 감지 비용만
+
+    ConfigurableApplicationContext context;
+    EntityManagerFactory entityManagerFactory;
+
+    EntityManager em;
+    List<Member> members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("flush" + managedEntities);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        BenchmarkApplication.loadMembers(context, managedEntities);
+        log.info("Member 바이트코드 향상 - dirty tracking {}, lazy initialization {}",
+                SelfDirtinessTracker.class.isAssignableFrom(Member.class),
+                PersistentAttributeInterceptable.class.isAssignableFrom(Member.class));
+    }
+
+    @Setup(Level.Invocation)
+    public void load() {
+        em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        members = em.createNamedQuery("Member.findAllMembers", Member.class).getResultList();
+    }
+
+    @TearDown(Level.Invocation)
+    public void rollback() {
+        em.getTransaction().rollback();
+        em.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int flush() {
+        for (int i = 0; i < dirtyEntities; i++) {
+            Member member = members.get(i);
+            member.setAge(member.getAge() + 1);
+        }
+        em.flush();
+        return members.size();
+    }
+}
@@ -0,0 +1,127 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.KeysetCursor;
+import com.study.datajpa.repository.MemberJpaRepository;
+import com.study.datajpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 조회 경로별 비용 - 페이징 깊이, fetch join/엔티티 그래프/지연로딩, dto 프로젝션, 벌크 업데이트
+ * 매 호출은 새 트랜잭션(새 영속성 컨텍스트)에서 실행한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberQueryBenchmark {
+
+    static final int PAGE_SIZE = 20;
+    static final Sort USERNAME_DESC = Sort.by(Sort.Direction.DESC, "userName");
+
+    @Param({"10000", "100000"})
+    public int datasetSize;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberJpaRepository memberJpaRepository;
+    TransactionTemplate readTx;
+    TransactionTemplate writeTx;
+
+    int deepPage;
+    String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("query" + datasetSize);
+        memberRepository = context.getBean(MemberRepository.class);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        readTx = BenchmarkApplication.transactionTemplate(context, true);
+        writeTx = BenchmarkApplication.transactionTemplate(context, false);
+
+        BenchmarkApplication.loadMembers(context, datasetSize);
+
+        // age = 0 인 회원의 마지막 페이지 - offset 페이징이 가장 비싼 위치
+        int membersPerAge = datasetSize / BenchmarkApplication.AGE_COUNT;
+        deepPage = membersPerAge / PAGE_SIZE - 1;
+        deepCursor = readTx.execute(status -> {
+            Member last = memberRepository.findByAge(0, PageRequest.of(deepPage, PAGE_SIZE, USERNAME_DESC))
+                    .getContent().get(0);
+            return KeysetCursor.of(last.getUserName(), last.getId()).encode();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByAgeShallowPage() {
+        return readTx.execute(status -> memberRepository.findByAge(0, PageRequest.of(0, PAGE_SIZE, USERNAME_DESC)));
+    }
+
+    @Benchmark
+    public Object findByAgeDeepPage() {
+        return readTx.execute(status -> memberRepository.findByAge(0, PageRequest.of(deepPage, PAGE_SIZE, USERNAME_DESC)));
+    }
+
+    @Benchmark
+    public Object findByAgeKeysetDeepPage() {
+        return readTx.execute(status -> memberRepository.findByAgeKeyset(0, deepCursor, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public void findMemberFetchJoin(Blackhole bh) {
+        readTx.executeWithoutResult(status -> touchTeams(memberRepository.findMemberFetchJoin(), bh));
+    }
+
+    @Benchmark
+    public void findMemberEntityGraph(Blackhole bh) {
+        readTx.executeWithoutResult(status -> touchTeams(memberRepository.findMemberEntityGraph(), bh));
+    }
+
+    @Benchmark
+    public void findAllLazy(Blackhole bh) {
+        // 엔티티 그래프 없는 순수 jpql - team은 지연로딩(batch fetch)
+        readTx.executeWithoutResult(status -> touchTeams(memberJpaRepository.findAll(), bh));
+    }
+
+    @Benchmark
+    public Object findMemberDto() {
+        return readTx.execute(status -> memberRepository.findMemberDto());
+    }
+
+    @Benchmark
+    public void findAllEntityThenMap(Blackhole bh) {
+        readTx.executeWithoutResult(status -> {
+            for (Member member : memberRepository.findMemberFetchJoin()) {
+                bh.consume(member.getId());
+                bh.consume(member.getUserName());
+                bh.consume(member.getTeam() == null ? null : member.getTeam().getName());
+            }
+        });
+    }
+
+    @Benchmark
+    public int bulkAgePlus() {
+        // 데이터셋이 바뀌지 않도록 롤백
+        return writeTx.execute(status -> {
+            status.setRollbackOnly();
+            return memberRepository.bulkAgePlus(BenchmarkApplication.AGE_COUNT / 2);
+        });
+    }
+
+    private static void touchTeams(List<Member> members, Blackhole bh) {
+        for (Member member : members) {
+            bh.consume(member.getTeam().getName());
+        }
+    }
+}
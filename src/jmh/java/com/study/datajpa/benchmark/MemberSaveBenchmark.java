@@ -0,0 +1,78 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * save 한 건씩 vs saveAllBatched (rows/s = rows / 평균 시간)
+ * - saveAndFlushEach : 한 건마다 flush - insert round-trip이 row 수만큼
+ * - save             : 커밋 때 한 번에 flush - hibernate batch insert
+ * - saveAllBatched   : 청크마다 flush + clear - 영속성 컨텍스트를 작게 유지
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberSaveBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate tx;
+
+    List<Member> members;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkApplication.start("save");
+        memberRepository = context.getBean(MemberRepository.class);
+        tx = BenchmarkApplication.transactionTemplate(context, false);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareMembers() {
+        memberRepository.deleteAllInBatch();
+        members = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            members.add(new Member("member" + i, i % BenchmarkApplication.AGE_COUNT));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object saveAndFlushEach() {
+        return tx.execute(status -> {
+            for (Member member : members) {
+                memberRepository.saveAndFlush(member);
+            }
+            return members.size();
+        });
+    }
+
+    @Benchmark
+    public Object save() {
+        return tx.execute(status -> {
+            for (Member member : members) {
+                memberRepository.save(member);
+            }
+            return members.size();
+        });
+    }
+
+    @Benchmark
+    public int saveAllBatched() {
+        return memberRepository.saveAllBatched(members, 50);
+    }
+}
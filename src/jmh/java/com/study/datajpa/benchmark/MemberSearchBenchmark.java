@@ -0,0 +1,62 @@
+package com.study.datajpa.benchmark;
+
+import com.study.datajpa.dto.MemberSuggestion;
+import com.study.datajpa.service.MemberSearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * username 자동완성 - 메모리 인덱스 prefix 검색 (상위 10건)
+ * 인덱스 메모리(member.search.index.bytes, MB)를 보조 지표(@AuxCounters)로 같이 보고한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchBenchmark {
+
+    @Param({"1000000"})
+    public int datasetSize;
+
+    // 짧은 prefix일수록 일치하는 회원이 많다.(member1 -> 11만, member12345 -> 11)
+    @Param({"member1", "member12345", "nobody"})
+    public String prefix;
+
+    ConfigurableApplicationContext context;
+    MemberSearchService searchService;
+    double indexMb;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("search" + datasetSize);
+        BenchmarkApplication.loadMembers(context, datasetSize);
+        searchService = context.getBean(MemberSearchService.class);
+        searchService.rebuild();
+        double bytes = context.getBean(MeterRegistry.class).get("member.search.index.bytes").gauge().value();
+        indexMb = bytes / (1024 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberSuggestion> search(IndexCounters counters) {
+        counters.indexMb = indexMb;
+        return searchService.search(prefix, 10);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class IndexCounters {
+        public double indexMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            indexMb = 0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.study.datajpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Slf4j
+@Configuration
+public class AsyncRepositoryConfig {
+
+    /**
+     * 동시 실행 수 = 커넥션 풀 최대 크기 - reserved-connections (동기 요청 몫으로 남겨둔다.)
+     * 풀이 Hikari가 아니면 max-concurrency 설정값을 쓴다.
+     */
+    @Bean(destroyMethod = "close")
+    public BoundedRepositoryExecutor repositoryExecutor(DataSource dataSource,
+                                                        MeterRegistry meterRegistry,
+                                                        @Value("${app.async.reserved-connections:2}") int reservedConnections,
+                                                        @Value("${app.async.max-concurrency:4}") int maxConcurrency,
+                                                        @Value("${app.async.queue-capacity:100}") int queueCapacity,
+                                                        @Value("${app.async.virtual-threads:true}") boolean virtualThreads) throws SQLException {
+        int concurrency = maxConcurrency;
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            concurrency = Math.max(1, poolSize - reservedConnections);
+        }
+
+        BoundedRepositoryExecutor executor = new BoundedRepositoryExecutor(concurrency, queueCapacity, virtualThreads);
+        log.info("repositoryExecutor - 동시 실행 {}, 대기열 {}, 가상 스레드 {}",
+                concurrency, queueCapacity, executor.isVirtualThreads());
+
+        Gauge.builder("repository.async.active", executor, BoundedRepositoryExecutor::getActive).register(meterRegistry);
+        Gauge.builder("repository.async.pending", executor, BoundedRepositoryExecutor::getPending).register(meterRegistry);
+        return executor;
+    }
+}
@@ -0,0 +1,103 @@
+package com.study.datajpa.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 리포지토리 조회용 Executor
+ * 동시에 실행되는 작업 수를 커넥션 풀 크기보다 작게(maxConcurrency) 제한한다. - 비동기 조회가 풀을 다 써버리면 일반 요청이 커넥션을 못 얻는다.
+ * 대기 작업이 queueCapacity를 넘으면 바로 RejectedExecutionException (밀려있는 작업을 더 쌓지 않는다.)
+ *
+ * JDK 21 이상이고 virtualThreads=true면 작업마다 가상 스레드를 쓴다. 이때도 동시 실행 수는 semaphore로 제한한다.
+ */
+@Slf4j
+public class BoundedRepositoryExecutor implements Executor, AutoCloseable {
+
+    private final ExecutorService delegate;
+    private final Semaphore running;
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final boolean virtualThreads;
+
+    public BoundedRepositoryExecutor(int maxConcurrency, int queueCapacity, boolean preferVirtualThreads) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxPending = maxConcurrency + queueCapacity;
+        this.running = new Semaphore(maxConcurrency);
+
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.delegate = virtual != null ? virtual : Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "repository-async-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    @Override
+    public void execute(Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("리포지토리 비동기 작업 대기열이 가득 찼습니다. (최대 " + maxPending + ")");
+        }
+        try {
+            delegate.execute(() -> {
+                running.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getActive() {
+        return maxConcurrency - running.availablePermits();
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        delegate.shutdown();
+        if (!delegate.awaitTermination(10, TimeUnit.SECONDS)) {
+            delegate.shutdownNow();
+        }
+    }
+
+    /**
+     * 소스 레벨이 11이라 리플렉션으로 호출 - JDK 21 미만이면 null
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("가상 스레드를 지원하지 않는 JDK - 고정 크기 스레드 풀 사용");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.study.datajpa.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 2차 캐시 hit ratio 메트릭
+ * hit/miss/put 횟수는 spring boot가 hibernate.second.level.cache.* 로 이미 노출하므로 여기서는 비율만 추가한다.
+ * 쿼리 플랜 캐시(JPQL 파싱 결과)는 hit/miss/비율과 설정된 최대 크기를 노출한다.
+ */
+@Configuration
+public class CacheMetricsConfig {
+
+    @Bean
+    public MeterBinder secondLevelCacheHitRatio(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                Gauge.builder("hibernate.second.level.cache.hit.ratio", statistics,
+                                s -> regionHitRatio(s.getDomainDataRegionStatistics(region)))
+                        .tags(Tags.of("region", region))
+                        .register(registry);
+            }
+            Gauge.builder("hibernate.query.cache.hit.ratio", statistics,
+                            s -> ratio(s.getQueryCacheHitCount(), s.getQueryCacheMissCount()))
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder queryPlanCacheMetrics(EntityManagerFactory entityManagerFactory,
+                                             @Value("${spring.jpa.properties.hibernate.query.plan_cache_max_size:2048}") int planCacheMaxSize,
+                                             @Value("${spring.jpa.properties.hibernate.query.plan_parameter_metadata_max_size:128}") int parameterMetadataMaxSize) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            FunctionCounter.builder("hibernate.query.plan.cache.hits", statistics, Statistics::getQueryPlanCacheHitCount)
+                    .register(registry);
+            FunctionCounter.builder("hibernate.query.plan.cache.misses", statistics, Statistics::getQueryPlanCacheMissCount)
+                    .register(registry);
+            Gauge.builder("hibernate.query.plan.cache.hit.ratio", statistics,
+                            s -> ratio(s.getQueryPlanCacheHitCount(), s.getQueryPlanCacheMissCount()))
+                    .register(registry);
+            Gauge.builder("hibernate.query.plan.cache.max.size", () -> planCacheMaxSize)
+                    .register(registry);
+            Gauge.builder("hibernate.query.plan.parameter.metadata.max.size", () -> parameterMetadataMaxSize)
+                    .register(registry);
+        };
+    }
+
+    private static double regionHitRatio(CacheRegionStatistics region) {
+        return region == null ? 0 : ratio(region.getHitCount(), region.getMissCount());
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.datajpa.config;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * hibernate 엔티티 이벤트 리스너 등록
+ * Post(Insert|Update|Delete)EventListener를 구현한 빈은 모두 hibernate에 등록된다.(flush 시점에 엔티티 단위로 호출)
+ * JPQL/JDBC 벌크 연산은 엔티티 이벤트가 발생하지 않는다.
+ */
+@Component
+public class EntityEventListenerRegistrar {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectProvider<PostInsertEventListener> insertListeners;
+    private final ObjectProvider<PostUpdateEventListener> updateListeners;
+    private final ObjectProvider<PostDeleteEventListener> deleteListeners;
+
+    public EntityEventListenerRegistrar(EntityManagerFactory entityManagerFactory,
+                                        ObjectProvider<PostInsertEventListener> insertListeners,
+                                        ObjectProvider<PostUpdateEventListener> updateListeners,
+                                        ObjectProvider<PostDeleteEventListener> deleteListeners) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.insertListeners = insertListeners;
+        this.updateListeners = updateListeners;
+        this.deleteListeners = deleteListeners;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        insertListeners.orderedStream().forEach(listener -> registry.appendListeners(EventType.POST_INSERT, listener));
+        updateListeners.orderedStream().forEach(listener -> registry.appendListeners(EventType.POST_UPDATE, listener));
+        deleteListeners.orderedStream().forEach(listener -> registry.appendListeners(EventType.POST_DELETE, listener));
+    }
+}
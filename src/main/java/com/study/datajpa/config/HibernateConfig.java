@@ -0,0 +1,25 @@
+package com.study.datajpa.config;
+
+import com.study.datajpa.metrics.EntityLoadCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.stream.Collectors;
+
+@Configuration
+public class HibernateConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(ObjectProvider<SqlStatementListener> listeners) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new QueryStatementInspector(listeners.orderedStream().collect(Collectors.toList())));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer interceptorCustomizer(EntityLoadCounter entityLoadCounter) {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, entityLoadCounter);
+    }
+}
@@ -0,0 +1,26 @@
+package com.study.datajpa.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+
+/**
+ * Hibernate StatementInspector - SQL을 바꾸지 않고 리스너들에게 전달만 한다.
+ * save/delete/벌크 update 등 어떤 경로로 나간 쿼리든 여기를 지나간다.
+ */
+public class QueryStatementInspector implements StatementInspector {
+
+    private final List<SqlStatementListener> listeners;
+
+    public QueryStatementInspector(List<SqlStatementListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        for (SqlStatementListener listener : listeners) {
+            listener.onStatement(sql);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,146 @@
+package com.study.datajpa.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica, 나머지는 primary로 보낸다.
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 정해지지 않으므로 반드시 LazyConnectionDataSourceProxy로 감싸서 쓴다.
+ * (실제 커넥션은 첫 SQL을 실행할 때 얻는다.)
+ *
+ * read-your-writes (max-lag)
+ * - 복제 지연을 재지는 않는다. 스레드마다 마지막 쓰기 트랜잭션의 커밋 시각(ThreadLocal)을 기억해서
+ *   그 뒤 maxLag 동안은 같은 스레드의 읽기도 primary에서 읽는다.(방금 쓴 데이터가 replica에 아직 없을 수 있다.)
+ * - 다른 스레드(다른 요청)의 읽기는 바로 replica로 간다. -> 실제 지연이 maxLag보다 길거나 다른 요청이 쓴 데이터는 오래된 값을 볼 수 있다.
+ *   maxLag는 평소 복제 지연보다 넉넉하게 잡는다.
+ * - 커밋 시각은 쓰기 트랜잭션이 primary 커넥션을 얻을 때 등록한 afterCommit에서 남긴다.
+ *   (커넥션을 얻은 시각으로 재면 긴 트랜잭션은 커밋 전에 maxLag가 지나 버린다. 롤백된 트랜잭션은 남기지 않는다.)
+ * - replica 커넥션을 못 얻으면 cooldown 동안 primary로 읽는다.
+ *
+ * datasource.routing.connections{target}  : 어느 쪽 커넥션을 얻었는지
+ * datasource.routing.fallback{reason}      : replica 대신 primary로 읽은 횟수 (lag / replica-down)
+ * datasource.routing.replica.available     : 1 = replica 사용 중, 0 = cooldown
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final long maxLagNanos;
+    private final long cooldownNanos;
+    private volatile long replicaDownUntilNanos;
+
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+    private final Counter lagFallbacks;
+    private final Counter replicaDownFallbacks;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, Duration cooldown,
+                                      MeterRegistry registry) {
+        this.primary = primary;
+        this.maxLagNanos = maxLag.toNanos();
+        this.cooldownNanos = cooldown.toNanos();
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        this.primaryConnections = registry.counter("datasource.routing.connections", "target", PRIMARY);
+        this.replicaConnections = registry.counter("datasource.routing.connections", "target", REPLICA);
+        this.lagFallbacks = registry.counter("datasource.routing.fallback", "reason", "lag");
+        this.replicaDownFallbacks = registry.counter("datasource.routing.fallback", "reason", "replica-down");
+        Gauge.builder("datasource.routing.replica.available", this, ds -> ds.isReplicaAvailable() ? 1 : 0)
+                .register(registry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        long now = System.nanoTime();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                stampOnCommit(); // 쓰기 트랜잭션
+            }
+            return PRIMARY;
+        }
+        Long lastWrite = lastWriteNanos.get();
+        if (lastWrite != null && now - lastWrite < maxLagNanos) { // 이 스레드가 방금 썼다.(실제 지연과 무관)
+            lagFallbacks.increment();
+            return PRIMARY;
+        }
+        if (!isReplicaAvailable()) {
+            replicaDownFallbacks.increment();
+            return PRIMARY;
+        }
+        return REPLICA;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(determineCurrentLookupKey(), null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(determineCurrentLookupKey(), username, password);
+    }
+
+    private Connection route(Object key, String username, String password) throws SQLException {
+        if (PRIMARY.equals(key)) {
+            primaryConnections.increment();
+            return connect(primary, username, password);
+        }
+        try {
+            Connection connection = connect(getResolvedDataSources().get(REPLICA), username, password);
+            replicaConnections.increment();
+            return connection;
+        } catch (SQLException e) {
+            replicaDownUntilNanos = System.nanoTime() + cooldownNanos;
+            log.warn("replica 커넥션 실패 - {}초 동안 primary에서 읽는다. : {}", cooldownNanos / 1_000_000_000, e.getMessage());
+            replicaDownFallbacks.increment();
+            primaryConnections.increment();
+            return connect(primary, username, password);
+        }
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    private static void stampOnCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lastWriteNanos.set(System.nanoTime());
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof WriteCommitStamp) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new WriteCommitStamp());
+    }
+
+    private static class WriteCommitStamp implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            lastWriteNanos.set(System.nanoTime());
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        return System.nanoTime() - replicaDownUntilNanos >= 0;
+    }
+}
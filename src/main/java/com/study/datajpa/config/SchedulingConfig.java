@@ -0,0 +1,14 @@
+package com.study.datajpa.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 주기 작업(TeamStatsReconciler) - 기본은 꺼져 있다.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "app.team-stats.reconcile", name = "enabled", havingValue = "true")
+public class SchedulingConfig {
+}
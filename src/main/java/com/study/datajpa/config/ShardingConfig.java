@@ -0,0 +1,123 @@
+package com.study.datajpa.config;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberShard;
+import com.study.datajpa.repository.ShardRouter;
+import com.study.datajpa.repository.ShardedMemberRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * app.sharding.enabled=true 이면 app.sharding.urls 마다 커넥션 풀 + EntityManagerFactory를 만들어 ShardedMemberRepository로 묶는다.
+ * - 샤드 EntityManagerFactory는 빈이 아니다. (메인 JPA 설정/리스너/2차 캐시와 섞이지 않게 - 캐시 무효화를 샤드마다 할 수 없다.)
+ * - 샤드 i의 member_seq/team_seq는 i * range-size 부터 발급하도록 맞춘다. (ShardRouter)
+ * - moved-ranges : MemberReshardService로 옮긴 구간 'from-to:shard' - 재기동해도 라우팅이 유지되게 로그에 찍힌 값을 적어둔다.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ShardedMemberRepository shardedMemberRepository(EntityManagerFactoryBuilder builder,
+                                                           DataSourceProperties properties,
+                                                           BoundedRepositoryExecutor repositoryExecutor,
+                                                           MeterRegistry meterRegistry,
+                                                           @Value("${app.sharding.urls}") List<String> urls,
+                                                           @Value("${app.sharding.username:${spring.datasource.username:}}") String username,
+                                                           @Value("${app.sharding.password:${spring.datasource.password:}}") String password,
+                                                           @Value("${app.sharding.maximum-pool-size:5}") int maximumPoolSize,
+                                                           @Value("${app.sharding.ddl-auto:${spring.jpa.hibernate.ddl-auto:none}}") String ddlAuto,
+                                                           @Value("${app.sharding.range-size:1099511627776}") long rangeSize,
+                                                           @Value("${app.sharding.moved-ranges:}") List<String> movedRanges,
+                                                           @Value("${app.sharding.max-scatter-window:10000}") int maxScatterWindow,
+                                                           @Value("${app.in-clause.max-chunk-size:512}") int inClauseChunkSize) {
+        ShardRouter router = new ShardRouter(urls.size(), rangeSize);
+        List<MemberShard> shards = new ArrayList<>();
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                        .url(urls.get(i).trim()).username(username).password(password)
+                        .build();
+                dataSource.setPoolName("shard-" + i);
+                dataSource.setMaximumPoolSize(maximumPoolSize);
+
+                MemberShard shard = new MemberShard(i, dataSource,
+                        entityManagerFactory(builder, dataSource, ddlAuto), meterRegistry);
+                shards.add(shard);
+                alignSequences(dataSource, router.rangeStart(i), router.rangeEnd(i));
+            }
+        } catch (RuntimeException e) {
+            shards.forEach(MemberShard::close);
+            throw e;
+        }
+
+        for (String moved : movedRanges) {
+            if (moved.isBlank()) {
+                continue;
+            }
+            String[] rangeAndShard = moved.trim().split(":");
+            String[] range = rangeAndShard[0].split("-");
+            router.assign(Long.parseLong(range[0]), Long.parseLong(range[1]), Integer.parseInt(rangeAndShard[1]));
+        }
+        log.info("샤드 {}개, 라우팅 {}", shards.size(), router.getRanges());
+        return new ShardedMemberRepository(shards, router, repositoryExecutor, meterRegistry, maxScatterWindow, inClauseChunkSize);
+    }
+
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactory(EntityManagerFactoryBuilder builder,
+                                                                               HikariDataSource dataSource,
+                                                                               String ddlAuto) {
+        Map<String, Object> jpaProperties = new HashMap<>();
+        jpaProperties.put("hibernate.hbm2ddl.auto", ddlAuto);
+        // 빌더에는 spring.jpa.properties만 들어있다. - 메인과 같은 테이블/컬럼 이름이 나오게 스프링 naming 전략을 지정
+        jpaProperties.put("hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName());
+        jpaProperties.put("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName());
+        jpaProperties.put("hibernate.cache.use_second_level_cache", false);
+        jpaProperties.put("hibernate.cache.use_query_cache", false);
+        jpaProperties.put("hibernate.generate_statistics", false);
+
+        LocalContainerEntityManagerFactoryBean factory = builder.dataSource(dataSource)
+                .packages(Member.class)
+                .persistenceUnit(dataSource.getPoolName())
+                .properties(jpaProperties)
+                .build();
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    /**
+     * 샤드 구간에 발급된 회원/팀이 아직 없으면 시퀀스를 구간 시작값으로 돌린다. (이미 있으면 그대로 이어서 발급)
+     */
+    private static void alignSequences(HikariDataSource dataSource, long rangeStart, long rangeEnd) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        alignSequence(jdbcTemplate, "member_seq", "member", "memeber_id", rangeStart, rangeEnd);
+        alignSequence(jdbcTemplate, "team_seq", "team", "team_id", rangeStart, rangeEnd);
+    }
+
+    private static void alignSequence(JdbcTemplate jdbcTemplate, String sequence, String table, String idColumn,
+                                      long rangeStart, long rangeEnd) {
+        Long maxId = jdbcTemplate.queryForObject(
+                "select max(" + idColumn + ") from " + table + " where " + idColumn + " >= ? and " + idColumn + " < ?",
+                Long.class, rangeStart, rangeEnd);
+        if (maxId == null) {
+            // 0은 id로 쓰지 않는다. (샤드 0)
+            jdbcTemplate.execute("alter sequence " + sequence + " restart with " + Math.max(1, rangeStart));
+        }
+    }
+}
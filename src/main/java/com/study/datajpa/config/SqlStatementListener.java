@@ -0,0 +1,10 @@
+package com.study.datajpa.config;
+
+/**
+ * Hibernate가 JDBC로 보내는 모든 SQL을 통지받는다.
+ * 빈으로 등록하면 {@link QueryStatementInspector}가 알아서 모아서 호출해준다. - 매 쿼리마다 불리므로 가볍게 작성할 것
+ */
+public interface SqlStatementListener {
+
+    void onStatement(String sql);
+}
@@ -0,0 +1,135 @@
+package com.study.datajpa.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.datajpa.dto.CursorResponse;
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.repository.KeysetCursor;
+import com.study.datajpa.repository.KeysetSlice;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.QueryRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 회원 목록 - 엔티티를 조회하지 않고 MemberDto로 바로 조회해서 내려준다.
+ * (엔티티를 그대로 json으로 만들면 지연로딩 프록시/양방향 연관관계(team.members) 때문에 추가 쿼리와 순환 참조가 생긴다.)
+ */
+@RestController
+public class MemberController {
+
+    static final int MAX_CURSOR_SIZE = 1000;
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTx;
+
+    public MemberController(MemberRepository memberRepository, ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * GET /members?age=10&page=0&size=20&sort=userName,desc
+     */
+    @GetMapping("/members")
+    public Page<MemberDto> list(@RequestParam int age,
+                                @PageableDefault(size = 20, sort = "userName", direction = Sort.Direction.DESC) Pageable pageable) {
+        return memberRepository.findMemberDtoByAge(age, pageable);
+    }
+
+    /**
+     * GET /members/cursor?age=10&size=20&cursor={이전 응답의 nextCursor}
+     * 깊은 페이지도 offset 없이 인덱스를 타므로 첫 페이지와 비용이 같다.
+     * size는 1 ~ 1000, 잘못된 size/cursor는 400 (트랜잭션을 시작하기 전에 확인)
+     */
+    @GetMapping("/members/cursor")
+    public CursorResponse<MemberDto> cursor(@RequestParam int age,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_CURSOR_SIZE) {
+            throw new IllegalArgumentException("size는 1 ~ " + MAX_CURSOR_SIZE + " 사이여야 합니다: " + size);
+        }
+        KeysetCursor.decode(cursor); // 잘못된 커서면 IllegalArgumentException
+        KeysetSlice<MemberDto> slice = readOnlyTx.execute(status ->
+                memberRepository.findMemberDtoByAgeKeyset(age, cursor, size));
+        return new CursorResponse<>(slice.getContent(), slice.getNextCursor());
+    }
+
+    /**
+     * GET /members/export - 전체 회원을 json 배열로 내보낸다.
+     * 목록을 메모리에 만들지 않고 DB 커서에서 한 건씩 읽어서 바로 응답에 쓴다.(메모리 일정)
+     */
+    @GetMapping("/members/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(this::writeMembers);
+    }
+
+    public void writeMembers(OutputStream out) throws IOException {
+        try {
+            // StreamingResponseBody는 별도 스레드에서 실행되므로 트랜잭션(커넥션)도 여기서 연다.
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<MemberDto> members = memberRepository.streamMemberDto();
+                     JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                             .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) { // 응답 스트림은 스프링이 닫는다.
+                    generator.writeStartArray();
+                    for (Iterator<MemberDto> it = members.iterator(); it.hasNext(); ) {
+                        MemberDto member = it.next();
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", member.getId());
+                        generator.writeStringField("username", member.getUsername());
+                        generator.writeStringField("teamname", member.getTeamname());
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 조회 등급(@QueryPolicy) 동시 실행 한도 초과 - 쿼리는 실행되지 않았으므로 잠시 후 다시 요청하면 된다.
+     */
+    @ExceptionHandler(QueryRejectedException.class)
+    public ResponseEntity<String> rejected(QueryRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    /**
+     * 잘못된 요청 파라미터 (keyset size 범위, 커서 형식)
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -0,0 +1,20 @@
+package com.study.datajpa.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * keyset 페이징 응답 - nextCursor를 다음 요청의 cursor로 넘긴다. 마지막 페이지면 null
+ */
+@Getter
+public class CursorResponse<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+
+    public CursorResponse(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,20 @@
+package com.study.datajpa.dto;
+
+import lombok.Data;
+
+/**
+ * 클래스 기반 프로젝션 - 생성자 파라미터 이름이 엔티티 필드명과 같아야 한다.
+ */
+@Data
+public class MemberNameAgeDto {
+
+    private Long id;
+    private String userName;
+    private int age;
+
+    public MemberNameAgeDto(Long id, String userName, int age) {
+        this.id = id;
+        this.userName = userName;
+        this.age = age;
+    }
+}
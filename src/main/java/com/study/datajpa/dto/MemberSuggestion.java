@@ -0,0 +1,18 @@
+package com.study.datajpa.dto;
+
+import lombok.Data;
+
+/**
+ * username 자동완성 결과
+ */
+@Data
+public class MemberSuggestion {
+
+    private final Long id;
+    private final String userName;
+
+    public MemberSuggestion(Long id, String userName) {
+        this.id = id;
+        this.userName = userName;
+    }
+}
@@ -0,0 +1,21 @@
+package com.study.datajpa.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+
+    private Long teamId;
+    private long memberCount;
+    private long ageSum;
+
+    public TeamStatsDto(Long teamId, Long memberCount, Long ageSum) {
+        this.teamId = teamId;
+        this.memberCount = memberCount == null ? 0 : memberCount;
+        this.ageSum = ageSum == null ? 0 : ageSum;
+    }
+
+    public double getAverageAge() {
+        return memberCount == 0 ? 0 : (double) ageSum / memberCount;
+    }
+}
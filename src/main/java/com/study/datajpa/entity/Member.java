@@ -1,20 +1,59 @@
 package com.study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
 @Getter @Setter
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // 2차 캐시 - 변경이 있으므로 soft lock으로 정합성 보장
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "userName", "age"})
-@NamedQuery (
-        name ="Member.findByUsername",
-        query = "select m from Member m where m.userName = :username" // nameQuery 실무에서 잘 안 쓴다...
-)
+// ddl-auto로 스키마를 만들기 때문에 인덱스도 매핑에 선언해야 생성된다. (조회 패턴 -> 인덱스, QueryPlanTest에서 검증)
+@Table(indexes = {
+        // findByAge, findByPage(age = ? order by userName desc), keyset 페이징 정렬키, count(age = ?)
+        @Index(name = "idx_member_age_user_name_id", columnList = "age, userName desc, memeber_id desc"),
+        // findByUsername, findUser(userName = ? and age = ?), findByUsernameAndAgeGreaterThan(userName = ? and age > ?)
+        // id는 인덱스에 같이 들어있으므로 findIdsByUsername은 테이블을 안 읽는다.
+        @Index(name = "idx_member_user_name_age", columnList = "userName, age"),
+        // Team.members 지연로딩(team_id = ? / in (...)), 팀별 집계
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
+// named query는 기동 시 한 번 파싱/검증된다.(오타가 있으면 기동 실패) - MemberJpaRepository가 사용
+// 주의 : 'Member.{MemberRepository 메소드명}' 으로 이름을 지으면 spring data가 그 메소드의 쿼리로 가져다 쓴다.
+@NamedQueries({
+        @NamedQuery(name = "Member.findByUsername",
+                query = "select m from Member m where m.userName = :username"), // nameQuery 실무에서 잘 안 쓴다...
+        @NamedQuery(name = "Member.findAllMembers", query = "select m from Member m"),
+        @NamedQuery(name = "Member.countAll", query = "select count(m) from Member m"),
+        @NamedQuery(name = "Member.findByUsernameAndAgeGreaterThen",
+                query = "select m from Member m where m.userName = :username and m.age > :age"),
+        @NamedQuery(name = "Member.findByPage",
+                query = "select m from Member m where m.age = :age order by m.userName desc"),
+        @NamedQuery(name = "Member.findByPageFirst",
+                query = "select m from Member m where m.age = :age order by m.userName desc, m.id desc"),
+        @NamedQuery(name = "Member.findByPageAfter",
+                query = "select m from Member m where m.age = :age" +
+                        " and (m.userName < :userName or (m.userName = :userName and m.id < :id))" +
+                        " order by m.userName desc, m.id desc"),
+        @NamedQuery(name = "Member.totalCount", query = "select count(m) from Member m where m.age = :age"),
+        @NamedQuery(name = "Member.findIdsByAge", query = "select m.id from Member m where m.age = :age"),
+        @NamedQuery(name = "Member.countByTeamFromAge",
+                query = "select m.team.id, count(m) from Member m where m.age >= :age and m.team is not null group by m.team.id"),
+        @NamedQuery(name = "Member.countByTeam",
+                query = "select m.team.id, count(m), sum(m.age) from Member m where m.team is not null group by m.team.id"),
+        @NamedQuery(name = "Member.incrementAgeFrom",
+                query = "update Member m set m.age = m.age+1, m.version = m.version+1 where m.age >= :age")
+})
+// IDENTITY 전략이면 insert 해야 id를 알 수 있어서 JDBC batch insert가 안된다. - 시퀀스를 50개씩 미리 당겨온다.(pooled-lo)
+@SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
 public class Member {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
     @Column(name = "memeber_id")
     private Long id;
 
@@ -26,6 +65,11 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    // 낙관적 락 - update ... where version = ? 로 동시 수정을 감지한다.(lost update 방지, 재시도는 @OptimisticRetry)
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
 // JPA는 No Arguement 생성자가 필요 - protected로
 //    protected Member() {
 //    }
@@ -48,7 +92,14 @@ public class Member {
     }
 
     public void changeTeam(Team team) {
+        // 양쪽 컬렉션은 이미 로딩된 경우에만 맞춰준다. 로딩 안된 컬렉션을 건드리면 팀 회원 전체를 select 한다.
+        // (DB에는 연관관계 주인인 Member.team만 반영되므로 다음에 로딩할 때 맞게 읽힌다.)
+        if (this.team != null && Hibernate.isInitialized(this.team.getMembers())) {
+            this.team.getMembers().remove(this);
+        }
         this.team = team;
-        team.getMembers().add(this); //팀에 있는 멤버에 다가도 add해준다.
+        if (Hibernate.isInitialized(team.getMembers())) {
+            team.getMembers().add(this); //팀에 있는 멤버에 다가도 add해준다.
+        }
     }
 }
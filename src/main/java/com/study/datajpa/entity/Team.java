@@ -4,6 +4,9 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,18 +14,40 @@ import com.study.datajpa.entity.Member;
 import java.util.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE) // 거의 안바뀌는 데이터 - lock 없이 변경 시 무효화만
 @Setter
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name")) // 팀 이름으로 찾기 (일괄 적재 시 이름 -> id)
+@NamedQueries({ // TeamRepository가 사용
+        @NamedQuery(name = "Team.findAllTeams", query = "select t from Team t"),
+        @NamedQuery(name = "Team.findAllWithMembers",
+                query = "select distinct t from Team t left join fetch t.members"),
+        @NamedQuery(name = "Team.findIdsOrderById", query = "select t.id from Team t order by t.id"),
+        @NamedQuery(name = "Team.findWithMembersByIds",
+                query = "select distinct t from Team t left join fetch t.members where t.id in :teamIds order by t.id"),
+        @NamedQuery(name = "Team.countAll", query = "select count(t) from Team t")
+})
+@SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
 public class Team {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
     @Column(name = "team_id")
     private Long id;
 
     private String name;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
+    // 팀 목록에서 getMembers()를 건드리면 팀마다 쿼리가 나간다.(N+1)
+    // -> hibernate.default_batch_fetch_size 만큼 팀 id를 모아서 in 쿼리로 한 번에 초기화한다.
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+    // 회원이 팀을 옮겨도 팀 version은 올리지 않는다.(팀 row에서 충돌 x - 연관관계 주인은 Member.team)
+    @OptimisticLock(excluded = true)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
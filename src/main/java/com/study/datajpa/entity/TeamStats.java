@@ -0,0 +1,38 @@
+package com.study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 팀별 회원 수 / 나이 합계 - 회원이 바뀔 때 같은 트랜잭션에서 증감분만 더한다.(TeamStatsRecorder)
+ * 팀 하나를 row 하나로 두면 같은 팀 회원을 동시에 바꾸는 트랜잭션이 모두 그 row 락에서 줄을 선다.
+ * -> 팀마다 stripe 개의 row로 나누고 트랜잭션마다 임의의 stripe에 더한다. 조회는 stripe 합계 (팀당 row 수 고정 = O(1))
+ *
+ * team과 FK는 걸지 않는다.(팀 삭제 flush 이후 커밋 직전에 통계 row를 지우기 때문)
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(name = "team_stats")
+@NamedQueries({ // TeamRepository, TeamStatsReconciler가 사용
+        @NamedQuery(name = "TeamStats.findByTeamId",
+                query = "select new com.study.datajpa.dto.TeamStatsDto(s.id.teamId, sum(s.memberCount), sum(s.ageSum))" +
+                        " from TeamStats s where s.id.teamId = :teamId group by s.id.teamId"),
+        @NamedQuery(name = "TeamStats.findAllTeams",
+                query = "select new com.study.datajpa.dto.TeamStatsDto(s.id.teamId, sum(s.memberCount), sum(s.ageSum))" +
+                        " from TeamStats s group by s.id.teamId order by s.id.teamId")
+})
+public class TeamStats {
+
+    @EmbeddedId
+    private TeamStatsId id;
+
+    @Column(name = "member_count")
+    private long memberCount;
+
+    @Column(name = "age_sum")
+    private long ageSum;
+}
@@ -0,0 +1,27 @@
+package com.study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamStatsId implements Serializable {
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private int stripe;
+
+    public TeamStatsId(Long teamId, int stripe) {
+        this.teamId = teamId;
+        this.stripe = stripe;
+    }
+}
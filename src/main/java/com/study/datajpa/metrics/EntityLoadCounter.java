@@ -0,0 +1,27 @@
+package com.study.datajpa.metrics;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+
+/**
+ * 스레드별 로딩한 엔티티 수 - 세션 팩토리 단위 Interceptor라 모든 세션이 공유한다.(스레드 안전해야 함)
+ * 지연 로딩도 로딩한 스레드에 잡힌다. (RepositoryMetricsAspect가 호출/트랜잭션 전후 값을 비교)
+ */
+@Component
+public class EntityLoadCounter extends EmptyInterceptor {
+
+    private final transient ThreadLocal<long[]> count = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        count.get()[0]++;
+        return false;
+    }
+
+    public long current() {
+        return count.get()[0];
+    }
+}
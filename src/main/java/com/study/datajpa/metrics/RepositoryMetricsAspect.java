@@ -0,0 +1,236 @@
+package com.study.datajpa.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리포지토리 메소드별 지표
+ * - repository.invocations : 응답시간 히스토그램
+ * - repository.statements / repository.rows / repository.entities.loaded : 호출당 SQL 수, 반환 건수, 로딩한 엔티티 수
+ * - repository.n_plus_one : 호출당 SQL이 n-plus-one-threshold를 넘은 횟수
+ * slow-threshold를 넘은 호출은 warn 로그를 남긴다.
+ *
+ * 트랜잭션 단위 - 리포지토리가 돌려준 엔티티의 지연 로딩은 호출이 끝난 뒤(서비스 코드에서) 나가므로 호출 단위로는 보이지 않는다.
+ * 트랜잭션 안의 첫 리포지토리 호출에서 시작해 트랜잭션이 끝날 때까지 센다. (태그는 첫 호출 메소드)
+ * - repository.transaction.statements / repository.transaction.entities.loaded : 트랜잭션당 SQL 수, 로딩한 엔티티 수
+ * - repository.transaction.n_plus_one : 트랜잭션의 select가 n-plus-one-threshold를 넘은 횟수 (호출 단위로 이미 잡힌 트랜잭션은 제외)
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3) // 트랜잭션을 시작하는 aspect(QueryPolicy, ReadOnlyQuery) 안쪽 -> trackTransaction이 그 트랜잭션을 본다.
+@ConditionalOnProperty(prefix = "app.repository-metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryMetricsAspect {
+
+    private final MeterRegistry registry;
+    private final StatementCounter statementCounter;
+    private final EntityLoadCounter entityLoadCounter;
+    private final long slowThresholdNanos;
+    private final long nPlusOneThreshold;
+
+    // 리포지토리 타입 -> 메소드 -> 미터 (findById 처럼 여러 리포지토리가 같이 쓰는 메소드가 있으므로 타입별로 나눈다.)
+    private final Map<Class<?>, Map<Method, MethodMeters>> meters = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry registry,
+                                   StatementCounter statementCounter,
+                                   EntityLoadCounter entityLoadCounter,
+                                   @Value("${app.repository-metrics.slow-threshold:200ms}") Duration slowThreshold,
+                                   @Value("${app.repository-metrics.n-plus-one-threshold:10}") long nPlusOneThreshold) {
+        this.registry = registry;
+        this.statementCounter = statementCounter;
+        this.entityLoadCounter = entityLoadCounter;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    // memberRepository, memberJpaRepository, teamRepository
+    @Around("bean(*Repository)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object target = joinPoint.getTarget();
+        MethodMeters m = meters.computeIfAbsent(target.getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                        method -> new MethodMeters(repositoryName(target), method.getName()));
+        TransactionTracker tracker = trackTransaction(m);
+        long statementsBefore = statementCounter.current();
+        long loadedBefore = entityLoadCounter.current();
+        long start = System.nanoTime();
+
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long statements = statementCounter.current() - statementsBefore;
+            long loaded = entityLoadCounter.current() - loadedBefore;
+
+            m.latency.record(elapsed, TimeUnit.NANOSECONDS);
+            m.statements.record(statements);
+            m.entitiesLoaded.record(loaded);
+            long rows = rowsOf(result);
+            if (rows >= 0) {
+                m.rows.record(rows);
+            }
+
+            if (statements > nPlusOneThreshold) {
+                if (tracker != null) {
+                    tracker.detected = true;
+                }
+                m.nPlusOne.increment();
+                log.warn("N+1 의심 - {}.{} : 호출 1번에 SQL {}개, 엔티티 {}개 로딩",
+                        m.repository, m.method, statements, loaded);
+            }
+            if (elapsed > slowThresholdNanos) {
+                log.warn("slow repository call - {}.{} : {}ms, SQL {}개, 반환 {}건",
+                        m.repository, m.method, TimeUnit.NANOSECONDS.toMillis(elapsed), statements, rows);
+            }
+        }
+    }
+
+    /**
+     * 현재 트랜잭션의 tracker - 트랜잭션의 첫 리포지토리 호출이면 등록한다. 트랜잭션(동기화)이 없으면 null
+     */
+    private TransactionTracker trackTransaction(MethodMeters m) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionTracker) {
+                return (TransactionTracker) synchronization;
+            }
+        }
+        TransactionTracker tracker = new TransactionTracker(m);
+        TransactionSynchronizationManager.registerSynchronization(tracker);
+        return tracker;
+    }
+
+    /**
+     * 반환 건수 - 셀 수 없는 타입(Stream, 숫자 등)은 -1
+     */
+    private static long rowsOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result.getClass().getName().startsWith("com.study.datajpa")) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     * spring data 리포지토리는 JDK 프록시이므로 구현한 우리 인터페이스 이름을 찾는다.
+     */
+    private static String repositoryName(Object target) {
+        for (Class<?> type : ClassUtils.getAllInterfacesAsSet(target)) {
+            if (type.getName().startsWith("com.study.datajpa")) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(target).getSimpleName();
+    }
+
+    /**
+     * 트랜잭션 하나의 SQL/엔티티 로딩 - afterCompletion은 같은 스레드에서 불리므로 스레드별 카운터 차이로 구한다.
+     */
+    private final class TransactionTracker implements TransactionSynchronization {
+        private final MethodMeters first;
+        private final long statementsBefore = statementCounter.current();
+        private final long selectsBefore = statementCounter.currentSelects();
+        private final long loadedBefore = entityLoadCounter.current();
+        private boolean detected; // 호출 단위로 이미 N+1을 잡았다.
+
+        private TransactionTracker(MethodMeters first) {
+            this.first = first;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            long statements = statementCounter.current() - statementsBefore;
+            long selects = statementCounter.currentSelects() - selectsBefore;
+            long loaded = entityLoadCounter.current() - loadedBefore;
+            first.transactionStatements.record(statements);
+            first.transactionEntitiesLoaded.record(loaded);
+            if (selects > nPlusOneThreshold && !detected) {
+                first.transactionNPlusOne.increment();
+                log.warn("N+1 의심 - 트랜잭션(첫 호출 {}.{}) : select {}개, 엔티티 {}개 로딩 (리포지토리 호출 밖 지연 로딩 포함)",
+                        first.repository, first.method, selects, loaded);
+            }
+        }
+    }
+
+    private final class MethodMeters {
+        private final String repository;
+        private final String method;
+        private final Timer latency;
+        private final DistributionSummary statements;
+        private final DistributionSummary rows;
+        private final DistributionSummary entitiesLoaded;
+        private final Counter nPlusOne;
+        private final DistributionSummary transactionStatements;
+        private final DistributionSummary transactionEntitiesLoaded;
+        private final Counter transactionNPlusOne;
+
+        private MethodMeters(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+            this.latency = Timer.builder("repository.invocations")
+                    .tag("repository", repository).tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.statements = DistributionSummary.builder("repository.statements")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.rows = DistributionSummary.builder("repository.rows")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.entitiesLoaded = DistributionSummary.builder("repository.entities.loaded")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.nPlusOne = Counter.builder("repository.n_plus_one")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.transactionStatements = DistributionSummary.builder("repository.transaction.statements")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.transactionEntitiesLoaded = DistributionSummary.builder("repository.transaction.entities.loaded")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+            this.transactionNPlusOne = Counter.builder("repository.transaction.n_plus_one")
+                    .tag("repository", repository).tag("method", method)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.study.datajpa.metrics;
+
+import com.study.datajpa.config.SqlStatementListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 스레드별 실행한 SQL 수 - 리포지토리 메소드 호출(또는 트랜잭션) 전후 값을 비교해서 쿼리 수를 구한다.
+ * select는 따로 센다. (트랜잭션 단위 N+1 판단 - insert/update가 많은 트랜잭션은 N+1이 아니다.)
+ * 로그를 남기지 않고 카운터만 올리므로 운영에서 켜둬도 부담이 없다.
+ */
+@Component
+public class StatementCounter implements SqlStatementListener {
+
+    private final ThreadLocal<long[]> count = ThreadLocal.withInitial(() -> new long[2]); // [전체, select]
+
+    @Override
+    public void onStatement(String sql) {
+        long[] counts = count.get();
+        counts[0]++;
+        if (isSelect(sql)) {
+            counts[1]++;
+        }
+    }
+
+    public long current() {
+        return count.get()[0];
+    }
+
+    public long currentSelects() {
+        return count.get()[1];
+    }
+
+    private static boolean isSelect(String sql) {
+        int i = 0;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "select", 0, 6);
+    }
+}
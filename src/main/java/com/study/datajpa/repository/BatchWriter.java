@@ -0,0 +1,41 @@
+package com.study.datajpa.repository;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 대량 persist - batchSize 건마다 flush(JDBC batch insert) + clear 해서 영속성 컨텍스트가 계속 커지지 않게 한다.
+ */
+final class BatchWriter {
+
+    private BatchWriter() {
+    }
+
+    /**
+     * 주의 : batchSize 마다 em.clear()가 나가므로 호출 전에 영속성 컨텍스트에 있던 엔티티도 준영속 상태가 된다.
+     */
+    static int persistAll(EntityManager em, Iterable<?> entities, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize는 1 이상이어야 합니다: " + batchSize);
+        }
+        Session session = em.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize); // hibernate.jdbc.batch_size를 이 세션에서만 batchSize로
+        try {
+            int count = 0;
+            for (Object entity : entities) {
+                em.persist(entity);
+                if (++count % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return count;
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.study.datajpa.repository;
+
+/**
+ * Page 조회 시 total count를 어떻게 구할지
+ */
+public enum CountMode {
+
+    /** 매번 count 쿼리 실행 (기본 Spring Data 동작) */
+    EXACT,
+
+    /** 정확한 count를 (쿼리, 파라미터) 단위로 TTL 동안 캐시 - Member가 insert/update/delete 되면 무효화 */
+    CACHED,
+
+    /** threshold 건까지만 세고 멈춘다. 넘으면 threshold를 돌려준다.(대략적인 total) - 결과는 CACHED와 같이 캐시 */
+    CAPPED
+}
@@ -0,0 +1,46 @@
+package com.study.datajpa.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 큰 in 절을 여러 쿼리로 나눠서 실행한다.
+ * - 중복 제거 후 maxChunkSize(2의 제곱수) 단위로 자른다.
+ * - 마지막 조각은 hibernate.query.in_clause_parameter_padding 설정으로 2의 제곱수 개수로 패딩된다.
+ * 따라서 파라미터 개수가 몇 개든 실행되는 SQL 종류는 log2(maxChunkSize) + 1 개를 넘지 않는다.(statement/plan 캐시 재사용)
+ * JDBC로 직접 실행하는 쪽(MemberAgeWriteBuffer)도 같은 app.in-clause.max-chunk-size로 자른다. (패딩은 hibernate 쿼리에만 적용)
+ */
+public final class InListChunks {
+
+    private InListChunks() {
+    }
+
+    public static <T, R> List<R> execute(Collection<T> values, int maxChunkSize, Function<List<T>, List<R>> query) {
+        if (values == null || values.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        if (distinct.size() <= maxChunkSize) {
+            return query.apply(distinct);
+        }
+
+        List<R> result = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += maxChunkSize) {
+            result.addAll(query.apply(distinct.subList(from, Math.min(from + maxChunkSize, distinct.size()))));
+        }
+        return result;
+    }
+
+    /**
+     * 2의 제곱수가 아니면 그보다 작은 2의 제곱수로 내린다.
+     */
+    public static int powerOfTwoFloor(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("in 절 조각 크기는 1 이상이어야 합니다: " + size);
+        }
+        return Integer.highestOneBit(size);
+    }
+}
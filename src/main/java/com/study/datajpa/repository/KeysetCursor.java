@@ -0,0 +1,54 @@
+package com.study.datajpa.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset(seek) 페이징 커서
+ * 마지막으로 읽은 (userName desc, id desc) 위치를 담는다. 클라이언트에는 encode()한 불투명 문자열로만 내려준다.
+ */
+@Getter
+@EqualsAndHashCode
+public class KeysetCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final String userName;
+    private final Long id;
+
+    private KeysetCursor(String userName, Long id) {
+        this.userName = userName;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(String userName, Long id) {
+        if (userName == null || id == null) {
+            throw new IllegalArgumentException("keyset 커서에는 userName과 id가 모두 필요합니다.");
+        }
+        return new KeysetCursor(userName, id);
+    }
+
+    public String encode() {
+        String raw = id + String.valueOf(SEPARATOR) + userName;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * null이나 빈 문자열이면 첫 페이지(null)로 본다.
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(SEPARATOR);
+            return of(raw.substring(idx + 1), Long.valueOf(raw.substring(0, idx)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 keyset 커서입니다: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.study.datajpa.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * keyset 페이징 결과 - Slice에 다음 페이지 커서를 붙여서 돌려준다.
+ * 몇 번째 페이지인지는 의미가 없으므로 page 번호는 항상 0이다.
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+    public static final Sort USERNAME_DESC_ID_DESC =
+            Sort.by(Sort.Direction.DESC, "userName").and(Sort.by(Sort.Direction.DESC, "id"));
+
+    private final String nextCursor;
+
+    public KeysetSlice(List<T> content, Pageable pageable, boolean hasNext, String nextCursor) {
+        super(content, pageable, hasNext);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * size + 1 건을 조회한 결과를 받아 size 건만 남기고, 남는 한 건이 있으면 다음 커서를 만든다.
+     */
+    public static <T> KeysetSlice<T> of(List<T> fetched, int size, Function<T, KeysetCursor> cursorOf) {
+        checkSize(size);
+        boolean hasNext = fetched.size() > size;
+        List<T> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new KeysetSlice<>(content, PageRequest.of(0, size, USERNAME_DESC_ID_DESC), hasNext, nextCursor);
+    }
+
+    /**
+     * 조회 전에 확인한다. (0이면 setMaxResults(1)로 한 건을 읽고 다음 커서를 만들 수 없다.)
+     */
+    public static void checkSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("keyset 페이지 크기는 1 이상이어야 합니다: " + size);
+        }
+    }
+
+    /**
+     * 다음 페이지 요청에 그대로 넘기면 되는 커서. 마지막 페이지면 null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public <U> KeysetSlice<U> map(Function<? super T, ? extends U> converter) {
+        return new KeysetSlice<>(getConvertedContent(converter), getPageable(), hasNext(), nextCursor);
+    }
+}
@@ -0,0 +1,163 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.config.SqlStatementListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Member count 쿼리 결과 캐시
+ * member 테이블에 insert/update/delete SQL이 나가면(save, delete, bulkAgePlus 등 경로 무관) 전체를 무효화한다.
+ * SQL이 나간 시점에는 아직 커밋 전이라 다른 트랜잭션이 옛날 count를 다시 캐시할 수 있다.
+ * -> 트랜잭션이 끝날 때(afterCompletion) 한 번 더 무효화하고, 그때까지 그 트랜잭션에서 센 count는 캐시하지 않는다.
+ */
+@Component
+public class MemberCountCache implements SqlStatementListener {
+
+    private static final Pattern MEMBER_WRITE =
+            Pattern.compile("^\\s*(insert\\s+into|update|delete\\s+from)\\s+member\\b", Pattern.CASE_INSENSITIVE);
+
+    private final ConcurrentMap<String, CachedCount> counts = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong savedQueries = new AtomicLong();
+
+    private final long ttlNanos;
+    private final long cappedThreshold;
+    private final int maxEntries;
+
+    public MemberCountCache(@Value("${app.count-cache.ttl:30s}") Duration ttl,
+                            @Value("${app.count-cache.capped-threshold:10000}") long cappedThreshold,
+                            @Value("${app.count-cache.max-entries:1000}") int maxEntries,
+                            MeterRegistry meterRegistry) {
+        this.ttlNanos = ttl.toNanos();
+        this.cappedThreshold = cappedThreshold;
+        this.maxEntries = maxEntries;
+
+        FunctionCounter.builder("member.count.queries.saved", savedQueries, AtomicLong::get)
+                .description("캐시로 대체되어 실행하지 않은 count 쿼리 수")
+                .register(meterRegistry);
+        Gauge.builder("member.count.cache.size", counts, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param key         쿼리 이름 + 파라미터 (ex: "Member.countByAge:10")
+     * @param exactCount  정확한 count 쿼리
+     * @param cappedCount limit을 받아 limit 건까지만 센 결과를 돌려주는 쿼리
+     */
+    public long count(CountMode mode, String key, LongSupplier exactCount, LongUnaryOperator cappedCount) {
+        switch (mode) {
+            case CACHED:
+                return cached(key, exactCount);
+            case CAPPED:
+                return cached(key + "#capped", () -> Math.min(cappedCount.applyAsLong(cappedThreshold + 1), cappedThreshold));
+            default:
+                return exactCount.getAsLong();
+        }
+    }
+
+    private long cached(String key, LongSupplier loader) {
+        if (hasPendingWrites()) {
+            // 커밋 전 member 변경이 보이는 트랜잭션 - 캐시 값은 이 변경을 모르고, 이 값은 다른 트랜잭션에 보여주면 안 된다.
+            return loader.getAsLong();
+        }
+
+        long now = System.nanoTime();
+        CachedCount cached = counts.get(key);
+        if (cached != null && now - cached.loadedAt < ttlNanos) {
+            savedQueries.incrementAndGet();
+            return cached.value;
+        }
+
+        // 로딩 도중 무효화가 일어났으면 옛날 값이므로 캐시에 넣지 않는다.
+        long gen = generation.get();
+        long value = loader.getAsLong();
+        if (gen == generation.get()) {
+            if (counts.size() >= maxEntries) {
+                counts.clear();
+            }
+            counts.put(key, new CachedCount(value, now));
+        }
+        return value;
+    }
+
+    /**
+     * 트랜잭션 안이면 지금 + 트랜잭션이 끝난 뒤(커밋/롤백) 한 번 더 무효화한다.
+     */
+    public void invalidateAll() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !hasPendingWrites()) {
+            TransactionSynchronizationManager.registerSynchronization(new PendingWrites());
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        counts.clear();
+    }
+
+    private boolean hasPendingWrites() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingWrites && ((PendingWrites) synchronization).cache() == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getSavedQueries() {
+        return savedQueries.get();
+    }
+
+    public long getCappedThreshold() {
+        return cappedThreshold;
+    }
+
+    @Override
+    public void onStatement(String sql) {
+        if (MEMBER_WRITE.matcher(sql).find()) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * 현재 트랜잭션이 member를 변경했다는 표시 (REQUIRES_NEW로 멈춘 바깥 트랜잭션의 것은 보이지 않는다.)
+     */
+    private final class PendingWrites implements TransactionSynchronization {
+
+        private MemberCountCache cache() {
+            return MemberCountCache.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            clear();
+        }
+    }
+
+    private static final class CachedCount {
+        private final long value;
+        private final long loadedAt;
+
+        private CachedCount(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.study.datajpa.repository;
 
 
 import com.study.datajpa.entity.Member;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Repository
 public class MemberJpaRepository {
@@ -14,20 +18,45 @@ public class MemberJpaRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private MemberCountCache countCache;
+
+    @Autowired
+    private TeamStatsRecorder teamStatsRecorder;
+
     public Member save(Member member) {
         em.persist(member);
         return member;
     }
 
+    /**
+     * 대량 저장 - batchSize 건씩 JDBC batch insert 후 영속성 컨텍스트를 비운다.(메모리 일정)
+     * */
+    @Transactional
+    public int saveAllBatched(Iterable<Member> members, int batchSize) {
+        return BatchWriter.persistAll(em, members, batchSize);
+    }
+
     public void delete(Member member) {
         em.remove(member);
     }
 
+    @QueryPolicy("heavy")
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
         //jpql
-        return em.createQuery("select m from Member m", Member.class)
+        return em.createNamedQuery("Member.findAllMembers", Member.class)
                 .getResultList(); // 다건
     }
+
+    /**
+     * 전체 회원 스트리밍 - 트랜잭션 안에서 try-with-resources로 사용
+     * */
+    public Stream<Member> streamAll() {
+        return ScrollingStreams.stream(em, em.createNamedQuery("Member.findAllMembers", Member.class), true);
+    }
+
+    @QueryPolicy("light")
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
@@ -35,7 +64,7 @@ public class MemberJpaRepository {
 
 
     public long count() {
-        return em.createQuery("select count(m) from Member m", Long.class)
+        return em.createNamedQuery("Member.countAll", Long.class)
                 .getSingleResult();
     }
 
@@ -44,7 +73,7 @@ public class MemberJpaRepository {
     }
 
     public List<Member> findByUsernameAndAgeGreaterThen(String username, int age) {
-        return em.createQuery("select m from Member m where m.userName = :username and m.age > :age")
+        return em.createNamedQuery("Member.findByUsernameAndAgeGreaterThen", Member.class)
                 .setParameter("username", username)
                 .setParameter("age", age)
                 .getResultList();
@@ -52,7 +81,8 @@ public class MemberJpaRepository {
 
     public List<Member> findByUsername(String username) {
         return em.createNamedQuery("Member.findByUsername", Member.class)  // Member 클래스에 정의한 @NameQuery를 불러온다.
-                .setParameter("username","회원1")
+                .setParameter("username", username)
+                .setHint(QueryHints.CACHEABLE, true) // 쿼리 캐시
                 .getResultList();
     }
 
@@ -61,23 +91,51 @@ public class MemberJpaRepository {
      * 순수 JPA 페이징
      * */
     public List<Member> findByPage(int age, int offset, int limit) {
-        return em.createQuery("select m from Member m where m.age = :age order by m.userName desc")
+        return em.createNamedQuery("Member.findByPage", Member.class)
                         .setParameter("age", age)
                         .setFirstResult(offset)
                         .setMaxResults(limit)
                         .getResultList();
     }
+
+    /**
+     * 순수 JPA keyset 페이징 - 직전 페이지 마지막 row의 (userName, id) 다음부터 조회
+     * 첫 페이지는 lastUserName, lastId 를 null로 넘긴다.
+     * */
+    public List<Member> findByPageAfter(int age, String lastUserName, Long lastId, int limit) {
+        if (lastUserName == null || lastId == null) {
+            return em.createNamedQuery("Member.findByPageFirst", Member.class)
+                    .setParameter("age", age)
+                    .setMaxResults(limit)
+                    .getResultList();
+        }
+        return em.createNamedQuery("Member.findByPageAfter", Member.class)
+                .setParameter("age", age)
+                .setParameter("userName", lastUserName)
+                .setParameter("id", lastId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
     public long totalCount(int age) {
-        return em.createQuery("select count(m) from Member m where m.age = :age",
-                        Long.class)
+        return em.createNamedQuery("Member.totalCount", Long.class)
                 .setParameter("age", age)
                 .getSingleResult();
     }
 
+    /**
+     * count 캐시/근사 count - CountMode 참고
+     * */
+    public long totalCount(int age, CountMode countMode) {
+        return countCache.count(countMode, "Member.countByAge:" + age,
+                () -> totalCount(age),
+                limit -> em.createNamedQuery("Member.findIdsByAge", Long.class)
+                        .setParameter("age", age)
+                        .setMaxResults((int) limit)
+                        .getResultList().size());
+    }
+
     public int bulkAgePlus(int age) {
-        return em.createQuery("update Member m set m.age = m.age+1" +
-                "where m.age >= :age")
-                .setParameter("age",age)
-                .executeUpdate();
+        return teamStatsRecorder.bulkAgePlus(em, age); // update + 팀별 나이 합계
     }
 }
@@ -9,18 +9,24 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface MemberRepository extends JpaRepository<Member, Long> {
+import javax.persistence.QueryHint;
+
+public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
 
     /*******************************************JPA NamedQuery*****************************************************/
     //함수형으로 표현하면 알아서 만들어준다.(짤막한 쿼리들 조건 1-2개는 그냥 이렇게 한다.)
-    List<Member> findByUsernameAndAgeGreaterThan(String username, int age); // 메소드 이름으로 쿼리 생성
+    // 주의 : 메소드 이름의 프로퍼티명은 필드명과 같아야 한다. 필드가 userName이라 'Username'으로는 쿼리가 안만들어져서 직접 jpql 지정
+    @Query("select m from Member m where m.userName = :username and m.age > :age")
+    List<Member> findByUsernameAndAgeGreaterThan(@Param("username") String username, @Param("age") int age);
 
     @Query(name = "Member.findByUsername") // name query를 불러와서 편리하게 쓸 수 있다.
-    List<Member> findByUsername(@Param("username") String username);
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true")) // 쿼리 캐시 - 결과 id는 캐시, 엔티티는 2차 캐시에서
+    List<Member> findByUsername(@Param("username") String username); // 자주 조회되는 username은 MemberLookupService 캐시 사용
     /**************************************************************************************************************/
 
 
@@ -37,29 +43,55 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
 
     /*******************************************@Query 값, dto 조회***************************************************/
     //@query를 이용하여 하나의 필드값만 가지고 올 수 있다. : 반드시 생성자와 매치되도록 select 절을 new로 작성
+    @ReadOnlyQuery // dto 조회라 readOnly 힌트는 의미 없다.(영속성 컨텍스트에 올라가는 엔티티가 없다.)
     @Query("select new com.study.datajpa.dto.MemberDto(m.id, m.userName, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
+    // findByAge 페이징을 dto로 - 엔티티를 만들지 않는다. count는 join 없이 member만 센다.(left join이라 건수 같음)
+    @QueryPolicy("heavy") // 뒤 페이지일수록 offset 만큼 읽고 버린다.
+    @Transactional(readOnly = true)
+    @Query(value = "select new com.study.datajpa.dto.MemberDto(m.id, m.userName, t.name) from Member m left join m.team t where m.age = :age",
+            countQuery = "select count(m) from Member m where m.age = :age")
+    Page<MemberDto> findMemberDtoByAge(@Param("age") int age, Pageable pageable);
+
     /*******************************************@Query 값, List 바인딩***************************************************/
     //'in :field' 절을 사용하여 List형식의 파라미터를 바인딩 할 수도 있다.(실무에서 많이쓰임)
-    @Query("select m from Member  m where m.userName in :names")
-    List<Member> findByNames(@Param("names") List<String> names);
+    // -> findByNames(List<String> names)는 MemberRepositoryCustom으로 이동 : 이름이 수천 개면 in 절을 조각내서 실행한다.
     /**************************************************************************************************************/
 
     /************************************************반환타임********************************************************/
     //spring data-jpa는 다양한 형태로 반환타입을 설정할 수 있다.
-    List<Member> findListByUsername(String username); // 컬렉션
-    Member findMemberByUsername(String username); // 단건
-    Optional<Member> findOptionalMemberByUsername(String username); // 단건 Optional
+    @Query("select m from Member m where m.userName = :username")
+    List<Member> findListByUsername(@Param("username") String username); // 컬렉션
+    @Query("select m from Member m where m.userName = :username")
+    Member findMemberByUsername(@Param("username") String username); // 단건
+    @Query("select m from Member m where m.userName = :username")
+    Optional<Member> findOptionalMemberByUsername(@Param("username") String username); // 단건 Optional
+
+    // MemberLookupService 캐시 로딩용
+    @Query("select m.id from Member m where m.userName = :username")
+    List<Long> findIdsByUsername(@Param("username") String username);
+
+    @Query("select new com.study.datajpa.dto.MemberDto(m.id, m.userName, t.name) from Member m left join m.team t where m.id = :id")
+    Optional<MemberDto> findMemberDtoById(@Param("id") Long id);
+
+    @Override
+    @QueryPolicy("light") // pk 조회 - 무거운 조회(heavy)와 동시 실행 자리를 따로 둔다.
+    Optional<Member> findById(Long id);
     /**************************************************************************************************************/
 
     /************************************************페이징*********************************************************/
     // 주의 : page는 1이 아닌, 0부터 시작
+    @QueryPolicy("heavy")
+    @Transactional(readOnly = true) // 읽기 전용 트랜잭션 -> 라우팅 사용 시 replica (RoutingDataSourceConfig)
     public Page<Member> findByAge(int age, Pageable pageable); // paging - 요청나간 page대로 페이징 쿼리
 
-    public Slice<Member> findByAgeSlice(int age, Pageable pageable); // slice - 요청나간거보다 하나 더 페이징 쿼리(다음 페이지가
+    @Query("select m from Member m where m.age = :age") // 'AgeSlice'라는 프로퍼티는 없으므로 jpql 지정
+    public Slice<Member> findByAgeSlice(@Param("age") int age, Pageable pageable); // slice - 요청나간거보다 하나 더 페이징 쿼리(다음 페이지가
                                                                      //         있나 없나 - 더보기 기능)
 
+    // keyset(커서) 페이징은 MemberRepositoryCustom#findByAgeKeyset - offset 페이징은 뒤 페이지로 갈수록 앞의 row를 다 읽고 버린다.
+
     // counting 쿼리를 분리하는 이유 : page 조인을 할 경우 select와 카운트쿼리가 두 개가 나가는데, where조건이 없는 순수 left,
     //                             outer 조인같은 경우는 사실 조인을 할 필요가 없다.(갯수가 어짜피 똑같)
     //  countQuery를 별도로 작성하면 카운트 쿼리는 작성한대로 나간다! -> 전체 원장에 대한 카운트라면 고려해볼 것~~
@@ -68,21 +100,39 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     public Page<Member> findByAgeAddCount(int age, Pageable pageable); // paging - 요청나간 page대로 페이징 쿼리
     /**************************************************************************************************************/
 
+    /************************************************읽기 전용 프로젝션**************************************************/
+    // 반환 타입을 파라미터로 받는다.(동적 프로젝션) - MemberSummary(인터페이스), MemberNameAgeDto(클래스)면 필요한 컬럼만 조회
+    // Member.class를 넘기면 엔티티를 조회하지만 @ReadOnlyQuery라 스냅샷을 만들지 않는다.
+    @ReadOnlyQuery
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true")) // 트랜잭션 안에서 호출될 때 (ReadOnlyQueryAspect)
+    <T> Page<T> findProjectedByAge(int age, Pageable pageable, Class<T> type); // findByAge
+
+    @ReadOnlyQuery
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    <T> List<T> findProjectedByUserNameIn(Collection<String> names, Class<T> type); // findByNames
+
+    @ReadOnlyQuery
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    <T> List<T> findProjectedByUserNameAndAge(String userName, int age, Class<T> type); // findUser
+    /**************************************************************************************************************/
+
     /************************************************벌크성쿼리*********************************************************/
     //주의사항 - bulk 연산 후에 업데이트 값을 참조하려하면 bulk 연산 전에 영속성 컨텍스트에 있는 값이 조회되기 때문에 변경 이전 값이 조회
     //          될 것이다. 따라서 업데이트 연산 후에 변경된 값을 바로 사용하고자 한다면 em.clear() 영속성 컨텍스트를 날리는 작업을 꼭
     //          해줘야한다.(날린다음에 조회하면 db에서 값을 조회해오기 때문에 업데이트된 값이 조회된다.)
     //          아니면 Modifying 옵션에 clearAutomatically를 true로 주면 em.clear가 알아서 나간다.
-    @Modifying(clearAutomatically = true) //update와 같은 경우에 JPA의 executeUpdate를 수행하여 리턴을 int형으로 주려면 해당 어노테이션이 붙어야한다.
-    @Query("update Member m set m.age = m.age+1 where m.age >= :age")
-    int bulkAgePlus(@Param("age") int age);
+    //          대량이면 MemberBulkUpdateService 사용 - id 범위 청크별 짧은 트랜잭션, 변경된 회원만 detach/evict
+    //          2차 캐시 - 벌크 연산이 나가면 hibernate가 Member 캐시 영역과 member 테이블을 쓰는 쿼리 캐시를 알아서 무효화한다.
+    //          bulkAgePlus는 TeamStats 나이 합계도 같이 올려야 해서 MemberRepositoryCustom으로 옮겼다.(끝나면 em.clear - clearAutomatically와 같음)
     /**************************************************************************************************************/
 
     /************************************************fetch join*********************************************************/
+    @QueryPolicy("heavy")
     @Query("select m from Member m left join fetch m.team")
     List<Member> findMemberFetchJoin();
 
     @Override
+    @QueryPolicy("heavy") // 전체 조회 - 건수 제한 없음
     @EntityGraph(attributePaths = {"team"}) // fetch join을 안해줘도 알아서 객체를 터치할때 알아서 attribute값을 join을 해준다.(fetch join)
     List<Member> findAll();
 
@@ -91,6 +141,7 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     List<Member> findMemberEntityGraph();
 
     @EntityGraph(attributePaths = {"team"}) // NamedQuery에 @EntityGraph를 넣어도 된다.
+    @Query("select m from Member m where m.userName = :username")
     List<Member> findEntityGraphByUsername(@Param("username") String username);
 
 
@@ -0,0 +1,77 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.dto.MemberSuggestion;
+import com.study.datajpa.entity.Member;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 메소드 이름/@Query로 표현하기 어려운 쿼리는 사용자 정의 리포지토리로 구현한다.
+ * 구현체 이름은 반드시 MemberRepository + Impl
+ */
+public interface MemberRepositoryCustom {
+
+    /**
+     * keyset(seek) 페이징 - offset 없이 (userName desc, id desc) 기준으로 커서 다음 건부터 size 건을 조회한다.
+     * 몇 번째 페이지를 조회하든 인덱스에서 커서 위치를 찾아 size + 1 건만 읽으므로 비용이 일정하다.
+     * userName이 null인 회원은 조회하지 않는다.
+     *
+     * @param cursor 이전 결과의 {@link KeysetSlice#getNextCursor()} - 첫 페이지는 null
+     * @param size   1 이상 (아니면 IllegalArgumentException)
+     */
+    KeysetSlice<Member> findByAgeKeyset(int age, String cursor, int size);
+
+    /**
+     * findByAgeKeyset과 같은 순서/커서 - 엔티티 대신 MemberDto로 조회 (팀이 없는 회원은 teamname이 null)
+     */
+    KeysetSlice<MemberDto> findMemberDtoByAgeKeyset(int age, String cursor, int size);
+
+    /**
+     * findByAge와 같은 페이징이지만 total count를 구하는 방법을 고를 수 있다.
+     * content가 pageSize보다 적게 나오는 등 total을 이미 알 수 있으면 count 쿼리는 아예 나가지 않는다.
+     */
+    Page<Member> findPageByAge(int age, Pageable pageable, CountMode countMode);
+
+    /**
+     * findByAgeAddCount와 같은 전체 회원 페이징 - count는 countMode에 따라 구한다.
+     */
+    Page<Member> findAllPage(Pageable pageable, CountMode countMode);
+
+    /**
+     * 대량 저장 - batchSize 건씩 JDBC batch insert 후 flush + clear 한다.
+     * saveAll()은 한 건씩 persist 하면서 영속성 컨텍스트에 전부 쌓아두므로 수십만 건이면 메모리가 계속 늘어난다.
+     *
+     * @return 저장한 건수
+     */
+    int saveAllBatched(Iterable<Member> members, int batchSize);
+
+    /**
+     * age 이상인 회원 나이 +1 (벌크 update 한 번) - 팀별 통계(TeamStats)도 같은 트랜잭션에서 갱신하고, 끝나면 영속성 컨텍스트를 비운다.
+     */
+    int bulkAgePlus(int age);
+
+    /*******************************************스트리밍 조회****************************************************/
+    // findAll()은 전체를 List로 올리고 전부 영속 상태로 관리하므로 테이블이 크면 OOM
+    // 아래 메소드들은 forward-only 커서로 조금씩 읽고, 소비한 엔티티는 바로 evict 해서 힙 사용량이 테이블 크기와 무관하다.
+    // 주의 : 트랜잭션 안에서 호출하고 try-with-resources로 닫아야 한다. - 읽기 전용 엔티티라 변경해도 반영되지 않는다.
+
+    Stream<Member> streamAll();
+
+    Stream<Member> streamByAge(int age);
+
+    // dto는 영속성 컨텍스트에 올라가지 않으므로 evict 할 것도 없다.
+    Stream<MemberDto> streamMemberDto();
+
+    // (id, userName)만 userName, id 순으로 - MemberSearchService 인덱스 적재
+    Stream<MemberSuggestion> streamUsernames();
+
+    /**
+     * 'in :names' 조회 - 이름이 많으면 app.in-clause.max-chunk-size 개씩 나눠서 차례로 실행하고 결과를 합친다.
+     * DB 파라미터 개수 제한에 걸리지 않고, 리스트 크기마다 새 SQL이 생겨 statement 캐시가 무력화되는 것도 막는다.
+     */
+    List<Member> findByNames(List<String> names);
+}
@@ -0,0 +1,160 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.dto.MemberSuggestion;
+import com.study.datajpa.entity.Member;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class MemberRepositoryImpl implements MemberRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final MemberCountCache countCache;
+    private final TeamStatsRecorder teamStatsRecorder;
+    private final int inClauseChunkSize;
+
+    public MemberRepositoryImpl(MemberCountCache countCache,
+                                TeamStatsRecorder teamStatsRecorder,
+                                @Value("${app.in-clause.max-chunk-size:512}") int inClauseChunkSize) {
+        this.countCache = countCache;
+        this.teamStatsRecorder = teamStatsRecorder;
+        this.inClauseChunkSize = InListChunks.powerOfTwoFloor(inClauseChunkSize);
+    }
+
+    @Override
+    public KeysetSlice<Member> findByAgeKeyset(int age, String cursor, int size) {
+        List<Member> fetched = keysetQuery("select m from Member m", Member.class, age, cursor, size).getResultList();
+        return KeysetSlice.of(fetched, size, m -> KeysetCursor.of(m.getUserName(), m.getId()));
+    }
+
+    @Override
+    public KeysetSlice<MemberDto> findMemberDtoByAgeKeyset(int age, String cursor, int size) {
+        List<MemberDto> fetched = keysetQuery(
+                "select new com.study.datajpa.dto.MemberDto(m.id, m.userName, t.name) from Member m left join m.team t",
+                MemberDto.class, age, cursor, size).getResultList();
+        return KeysetSlice.of(fetched, size, dto -> KeysetCursor.of(dto.getUsername(), dto.getId()));
+    }
+
+    // userName이 null인 회원은 커서를 만들 수 없고 DB마다 null 정렬 위치가 달라서 keyset 조회에서 뺀다.
+    private <T> TypedQuery<T> keysetQuery(String select, Class<T> type, int age, String cursor, int size) {
+        KeysetSlice.checkSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+
+        TypedQuery<T> query;
+        if (after == null) {
+            query = em.createQuery(select + " where m.age = :age and m.userName is not null" +
+                    " order by m.userName desc, m.id desc", type);
+        } else {
+            // (userName, id) < (커서 userName, 커서 id) 를 풀어서 쓴 조건 - idx_member_age_user_name_id를 그대로 탄다.
+            // (userName < :userName 이면 null은 어차피 빠진다.)
+            query = em.createQuery(select + " where m.age = :age" +
+                            " and (m.userName < :userName or (m.userName = :userName and m.id < :id))" +
+                            " order by m.userName desc, m.id desc", type)
+                    .setParameter("userName", after.getUserName())
+                    .setParameter("id", after.getId());
+        }
+
+        return query.setParameter("age", age)
+                .setMaxResults(size + 1); // 다음 페이지가 있는지 알기 위해 하나 더 조회
+    }
+
+    @Override
+    public Page<Member> findPageByAge(int age, Pageable pageable, CountMode countMode) {
+        String jpql = QueryUtils.applySorting("select m from Member m where m.age = :age", pageable.getSort(), "m");
+        TypedQuery<Member> query = em.createQuery(jpql, Member.class)
+                .setParameter("age", age);
+        List<Member> content = page(query, pageable).getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> countCache.count(countMode, "Member.countByAge:" + age,
+                () -> em.createQuery("select count(m) from Member m where m.age = :age", Long.class)
+                        .setParameter("age", age)
+                        .getSingleResult(),
+                limit -> em.createQuery("select m.id from Member m where m.age = :age", Long.class)
+                        .setParameter("age", age)
+                        .setMaxResults((int) limit)
+                        .getResultList().size()));
+    }
+
+    @Override
+    public Page<Member> findAllPage(Pageable pageable, CountMode countMode) {
+        String jpql = QueryUtils.applySorting("select m from Member m left join m.team t", pageable.getSort(), "m");
+        List<Member> content = page(em.createQuery(jpql, Member.class), pageable).getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> countCache.count(countMode, "Member.count",
+                () -> em.createQuery("select count(m) from Member m", Long.class)
+                        .getSingleResult(),
+                limit -> em.createQuery("select m.id from Member m", Long.class)
+                        .setMaxResults((int) limit)
+                        .getResultList().size()));
+    }
+
+    @Override
+    public List<Member> findByNames(List<String> names) {
+        return InListChunks.execute(names, inClauseChunkSize,
+                chunk -> em.createQuery("select m from Member m where m.userName in :names", Member.class)
+                        .setParameter("names", chunk)
+                        .setHint(QueryHints.CACHEABLE, true)
+                        .getResultList());
+    }
+
+    @Override
+    @Transactional
+    public int saveAllBatched(Iterable<Member> members, int batchSize) {
+        return BatchWriter.persistAll(em, members, batchSize);
+    }
+
+    @Override
+    @Transactional
+    public int bulkAgePlus(int age) {
+        int updated = teamStatsRecorder.bulkAgePlus(em, age);
+        em.clear();
+        return updated;
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return ScrollingStreams.stream(em, em.createQuery("select m from Member m", Member.class), true);
+    }
+
+    @Override
+    public Stream<Member> streamByAge(int age) {
+        return ScrollingStreams.stream(em, em.createQuery("select m from Member m where m.age = :age", Member.class)
+                .setParameter("age", age), true);
+    }
+
+    @Override
+    public Stream<MemberDto> streamMemberDto() {
+        return ScrollingStreams.stream(em, em.createQuery(
+                "select new com.study.datajpa.dto.MemberDto(m.id, m.userName, t.name) from Member m left join m.team t",
+                MemberDto.class), false); // 팀이 없는 회원도 내보낸다.(teamname null)
+    }
+
+    @Override
+    public Stream<MemberSuggestion> streamUsernames() {
+        return ScrollingStreams.stream(em, em.createQuery(
+                "select new com.study.datajpa.dto.MemberSuggestion(m.id, m.userName) from Member m" +
+                        " where m.userName is not null order by m.userName, m.id",
+                MemberSuggestion.class), false);
+    }
+
+    private static <T> TypedQuery<T> page(TypedQuery<T> query, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize());
+        }
+        return query;
+    }
+}
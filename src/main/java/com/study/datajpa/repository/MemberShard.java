@@ -0,0 +1,115 @@
+package com.study.datajpa.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Session;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.function.Function;
+
+/**
+ * 샤드 하나 = 커넥션 풀 + EntityManagerFactory (2차 캐시/통계 없음, ShardingConfig에서 만든다.)
+ * 호출마다 EntityManager와 트랜잭션을 새로 열고 닫는다. - 반환된 엔티티는 준영속 상태
+ * 응답시간은 shard.query{shard, operation, outcome}
+ */
+public class MemberShard implements AutoCloseable {
+
+    private final int index;
+    private final String name;
+    private final HikariDataSource dataSource;
+    private final LocalContainerEntityManagerFactoryBean factoryBean;
+    private final EntityManagerFactory emf;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate jdbcTransaction;
+    private final MeterRegistry meterRegistry;
+
+    public MemberShard(int index, HikariDataSource dataSource,
+                       LocalContainerEntityManagerFactoryBean factoryBean, MeterRegistry meterRegistry) {
+        this.index = index;
+        this.name = dataSource.getPoolName();
+        this.dataSource = dataSource;
+        this.factoryBean = factoryBean;
+        this.emf = factoryBean.getObject();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.meterRegistry = meterRegistry;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public <T> T read(String operation, Function<EntityManager, T> work) {
+        return execute(operation, true, work);
+    }
+
+    public <T> T write(String operation, Function<EntityManager, T> work) {
+        return execute(operation, false, work);
+    }
+
+    /**
+     * id를 그대로 옮겨야 하는 재분배(MemberReshardService)용 - JDBC 트랜잭션 하나로 실행
+     */
+    public <T> T jdbc(String operation, Function<JdbcTemplate, T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return jdbcTransaction.execute(status -> work.apply(jdbcTemplate));
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(timer(operation, outcome));
+        }
+    }
+
+    private <T> T execute(String operation, boolean readOnly, Function<EntityManager, T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            if (readOnly) {
+                em.unwrap(Session.class).setDefaultReadOnly(true); // 스냅샷을 안 만든다.
+            }
+            tx.begin();
+            T result = work.apply(em);
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+            sample.stop(timer(operation, outcome));
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("shard.query")
+                .tag("shard", name)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        factoryBean.destroy();
+        dataSource.close();
+    }
+}
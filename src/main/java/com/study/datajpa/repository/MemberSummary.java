@@ -0,0 +1,13 @@
+package com.study.datajpa.repository;
+
+/**
+ * 인터페이스 기반 프로젝션 - 필요한 컬럼만 select 하고 엔티티는 만들지 않는다.
+ */
+public interface MemberSummary {
+
+    Long getId();
+
+    String getUserName();
+
+    int getAge();
+}
@@ -0,0 +1,24 @@
+package com.study.datajpa.repository;
+
+import java.lang.annotation.*;
+
+/**
+ * 낙관적 락 충돌(OptimisticLockingFailureException) 시 트랜잭션을 처음부터 다시 실행한다.
+ * 재시도 간격은 backoffMillis부터 두 배씩 늘리고 maxBackoffMillis를 넘지 않는다.(+ 무작위 지연으로 동시 재시도 분산)
+ *
+ * 주의 : 트랜잭션 경계(@Transactional 메소드)에 붙여야 한다. 재시도마다 새 트랜잭션 = 새 영속성 컨텍스트에서 다시 읽어야 하기 때문
+ *       이미 바깥 트랜잭션 안에서 호출되면 재시도하지 않는다.(바깥 트랜잭션은 이미 롤백 대상)
+ *
+ * @see OptimisticRetryAspect
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OptimisticRetry {
+
+    int maxAttempts() default 5;
+
+    long backoffMillis() default 10;
+
+    long maxBackoffMillis() default 200;
+}
@@ -0,0 +1,60 @@
+package com.study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link OptimisticRetry} 처리
+ * 트랜잭션 advice보다 바깥에서 실행되어야 커밋(flush) 시점의 충돌까지 잡고, 재시도마다 새 트랜잭션이 열린다.
+ *
+ * repository.optimistic.retries   : 충돌 후 재시도한 횟수
+ * repository.optimistic.exhausted : maxAttempts까지 실패해서 예외를 그대로 던진 횟수
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OptimisticRetryAspect {
+
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public OptimisticRetryAspect(MeterRegistry registry) {
+        this.retries = registry.counter("repository.optimistic.retries");
+        this.exhausted = registry.counter("repository.optimistic.exhausted");
+    }
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, OptimisticRetry retry) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        long backoff = retry.backoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= retry.maxAttempts()) {
+                    exhausted.increment();
+                    log.warn("낙관적 락 재시도 {}회 실패 : {}", attempt, joinPoint.getSignature().toShortString());
+                    throw e;
+                }
+                retries.increment();
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+                backoff = Math.min(backoff * 2, retry.maxBackoffMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.study.datajpa.repository;
+
+import java.lang.annotation.*;
+
+/**
+ * 조회 등급(policy) 지정 - 등급별 설정은 app.query-policy.policies.{value}.*
+ * - max-concurrent : 이 등급 메소드를 동시에 실행할 수 있는 최대 수 (bulkhead - 커넥션을 잡기 전에 막는다.)
+ * - queue-timeout  : 자리가 없을 때 기다리는 최대 시간. 넘으면 QueryRejectedException (0이면 바로 거절)
+ * - timeout        : JDBC 쿼리 타임아웃 (초 단위로 올림) - 이미 트랜잭션 안이면 그 호출에서 만든 쿼리에만 적용
+ * 무거운 조회(fetch join 전체 조회, 깊은 페이지)가 느려져도 커넥션 풀을 다 잡지 못하게 해서 가벼운 조회(findById 등)의 응답시간을 지킨다.
+ * 메소드에 붙이거나, 리포지토리 인터페이스/클래스에 붙이면 모든 메소드에 기본 적용된다.(메소드가 우선)
+ *
+ * @see QueryPolicyAspect
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryPolicy {
+
+    String value();
+}
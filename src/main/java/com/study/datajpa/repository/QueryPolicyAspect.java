@@ -0,0 +1,300 @@
+package com.study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.Method;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link QueryPolicy} 처리 - 트랜잭션(커넥션)보다 바깥에서 실행된다.
+ * 1. 등급별 Semaphore에서 자리를 얻는다. queue-timeout 안에 못 얻으면 QueryRejectedException (쿼리를 실행하지 않는다.)
+ * 2. 트랜잭션이 없으면 timeout을 건 트랜잭션으로 실행 -> hibernate가 모든 statement에 남은 시간만큼 JDBC query timeout을 건다.
+ *    (조회 메소드면 readOnly 트랜잭션)
+ *    이미 트랜잭션 안이면 호출하는 동안만 EntityManager에 javax.persistence.query.timeout을 건다. -> 이 사이에 만든 JPQL/네이티브 쿼리에 적용
+ *    바깥 트랜잭션 timeout(@Transactional(timeout))이 더 짧으면 남은 시간을 쓴다. (em.find/flush는 바깥 트랜잭션 timeout만 적용)
+ *    JDBC 쿼리 타임아웃은 초 단위라 남은 시간이 1초 미만이면 쿼리를 실행하지 않고 TransactionTimedOutException
+ * 같은 스레드에서 같은 등급을 다시 호출하면(리포지토리가 리포지토리를 호출) 자리를 또 잡지 않는다. (자기 자신을 기다리는 교착 방지)
+ *
+ * repository.query.policy.queue{policy}    : 자리를 기다린 시간
+ * repository.query.policy.rejected{policy} : 거절 횟수
+ * repository.query.policy.timeouts{policy} : 쿼리/트랜잭션 타임아웃 횟수
+ * repository.query.policy.active{policy}   : 실행 중인 수
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1) // @OptimisticRetry 안쪽, 트랜잭션 바깥
+@ConditionalOnProperty(prefix = "app.query-policy", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryPolicyAspect {
+
+    private static final ThreadLocal<Set<String>> HELD = ThreadLocal.withInitial(HashSet::new);
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Method, Optional<Bulkhead>>> methodBulkheads = new ConcurrentHashMap<>();
+
+    public QueryPolicyAspect(Environment environment, MeterRegistry registry, PlatformTransactionManager transactionManager,
+                             EntityManagerFactory entityManagerFactory) {
+        this.environment = environment;
+        this.registry = registry;
+        this.transactionManager = transactionManager;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Around("bean(*Repository)")
+    public Object apply(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object target = joinPoint.getTarget();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Optional<Bulkhead> resolved = methodBulkheads.computeIfAbsent(target.getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> Optional.ofNullable(findPolicy(target, m)).map(p -> bulkhead(p.value())));
+        if (resolved.isEmpty()) {
+            return joinPoint.proceed();
+        }
+
+        Bulkhead bulkhead = resolved.get();
+        Set<String> held = HELD.get();
+        if (!held.add(bulkhead.name)) {
+            return invoke(joinPoint, bulkhead, method); // 재진입
+        }
+        try {
+            bulkhead.acquire();
+            try {
+                return invoke(joinPoint, bulkhead, method);
+            } finally {
+                bulkhead.release();
+            }
+        } finally {
+            held.remove(bulkhead.name);
+        }
+    }
+
+    private Object invoke(ProceedingJoinPoint joinPoint, Bulkhead bulkhead, Method method) throws Throwable {
+        try {
+            if (bulkhead.timeoutSeconds <= 0) {
+                return joinPoint.proceed();
+            }
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                return proceedWithQueryTimeout(joinPoint, bulkhead);
+            }
+            TransactionTemplate tx = RepositoryAspects.isQueryMethod(method) ? bulkhead.readOnlyTx : bulkhead.tx;
+            return tx.execute(status -> RepositoryAspects.proceed(joinPoint));
+        } catch (RuntimeException e) {
+            if (isTimeout(e)) {
+                bulkhead.timeouts.increment();
+                log.warn("쿼리 타임아웃({}초) - policy {}, {}", bulkhead.timeoutSeconds, bulkhead.name,
+                        joinPoint.getSignature().toShortString());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 바깥 트랜잭션의 EntityManager에 쿼리 타임아웃 힌트를 걸고 끝나면 되돌린다.
+     * hibernate는 힌트(ms)를 초로 반올림해서 statement에 건다. (0 = 제한 없음) -> 초 단위로 내림해서 걸고, 1초 미만이면 실행하지 않는다.
+     * 힌트가 있으면 트랜잭션 timeout 대신 힌트 값이 쓰이는데 EntityManager 속성은 지울 수 없으므로
+     * 원래 값이 없었으면 바깥 트랜잭션 timeout이 없을 때만 0으로, 있으면 그 시점의 남은 시간으로 되돌린다.
+     * (바깥 트랜잭션 timeout보다 정책 timeout이 짧을 때만 힌트를 건다. -> 그 외에는 트랜잭션 timeout 그대로)
+     */
+    private Object proceedWithQueryTimeout(ProceedingJoinPoint joinPoint, Bulkhead bulkhead) throws Throwable {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder == null) {
+            return joinPoint.proceed(); // JPA 트랜잭션이 아니다. (JdbcTemplate 전용 트랜잭션 등)
+        }
+        long timeoutMillis = bulkhead.timeoutSeconds * 1000L;
+        if (holder.hasTimeout()) {
+            long remainingMillis = holder.getTimeToLiveInMillis(); // 이미 지났으면 TransactionTimedOutException
+            if (remainingMillis < 1000) {
+                throw new TransactionTimedOutException("트랜잭션 남은 시간 " + remainingMillis + "ms - 쿼리 타임아웃(초 단위)을 걸 수 없습니다.");
+            }
+            if (remainingMillis <= timeoutMillis) {
+                return joinPoint.proceed(); // 바깥 트랜잭션 timeout이 먼저 끝난다.
+            }
+        }
+
+        EntityManager em = holder.getEntityManager();
+        Object previous = em.getProperties().get(QueryHints.SPEC_HINT_TIMEOUT);
+        em.setProperty(QueryHints.SPEC_HINT_TIMEOUT, (int) timeoutMillis);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            em.setProperty(QueryHints.SPEC_HINT_TIMEOUT, previous != null ? previous : restoredTimeoutMillis(holder));
+        }
+    }
+
+    private static int restoredTimeoutMillis(EntityManagerHolder holder) {
+        if (!holder.hasTimeout()) {
+            return 0;
+        }
+        try {
+            long remainingMillis = holder.getTimeToLiveInMillis();
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(1000, remainingMillis / 1000 * 1000));
+        } catch (TransactionTimedOutException e) {
+            return 1000; // 이미 지났다. - 다음 쿼리가 1초 안에 타임아웃
+        }
+    }
+
+    /**
+     * 등급 이름 -> bulkhead (처음 쓸 때 app.query-policy.policies.{name}.* 로 만든다.)
+     */
+    private Bulkhead bulkhead(String name) {
+        return bulkheads.computeIfAbsent(name, this::createBulkhead);
+    }
+
+    private Bulkhead createBulkhead(String name) {
+        String prefix = "app.query-policy.policies." + name + ".";
+        Integer maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class);
+        if (maxConcurrent == null) {
+            throw new IllegalStateException("정의되지 않은 query policy : " + name + " (" + prefix + "max-concurrent 필요)");
+        }
+        Duration queueTimeout = environment.getProperty(prefix + "queue-timeout", Duration.class, Duration.ZERO);
+        Duration timeout = environment.getProperty(prefix + "timeout", Duration.class, Duration.ZERO);
+        Bulkhead bulkhead = new Bulkhead(name, maxConcurrent, queueTimeout, timeout);
+        log.info("query policy {} - 동시 실행 {}, 대기 {}, 타임아웃 {}초", name, maxConcurrent, queueTimeout, bulkhead.timeoutSeconds);
+        return bulkhead;
+    }
+
+    /**
+     * 메소드 -> 선언한 인터페이스의 메소드(spring data) -> 클래스 메소드 -> 인터페이스/클래스 순으로 찾는다.
+     */
+    private static QueryPolicy findPolicy(Object target, Method method) {
+        QueryPolicy policy = AnnotatedElementUtils.findMergedAnnotation(method, QueryPolicy.class);
+        if (policy != null) {
+            return policy;
+        }
+        Class<?> userClass = ClassUtils.getUserClass(target);
+        Set<Class<?>> interfaces = ClassUtils.getAllInterfacesAsSet(target);
+        for (Class<?> type : interfaces) {
+            Method declared = ClassUtils.getMethodIfAvailable(type, method.getName(), method.getParameterTypes());
+            if (declared != null && (policy = AnnotatedElementUtils.findMergedAnnotation(declared, QueryPolicy.class)) != null) {
+                return policy;
+            }
+        }
+        policy = AnnotatedElementUtils.findMergedAnnotation(ClassUtils.getMostSpecificMethod(method, userClass), QueryPolicy.class);
+        if (policy != null) {
+            return policy;
+        }
+        for (Class<?> type : interfaces) {
+            if ((policy = AnnotatedElementUtils.findMergedAnnotation(type, QueryPolicy.class)) != null) {
+                return policy;
+            }
+        }
+        return AnnotatedElementUtils.findMergedAnnotation(userClass, QueryPolicy.class);
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof org.springframework.dao.QueryTimeoutException
+                    || cause instanceof javax.persistence.QueryTimeoutException
+                    || cause instanceof org.hibernate.QueryTimeoutException
+                    || cause instanceof TransactionTimedOutException
+                    || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    private final class Bulkhead {
+        private final String name;
+        private final Semaphore permits;
+        private final int maxConcurrent;
+        private final long queueTimeoutNanos;
+        private final int timeoutSeconds;
+        private final TransactionTemplate tx;
+        private final TransactionTemplate readOnlyTx;
+        private final Timer queueTime;
+        private final Counter rejected;
+        private final Counter timeouts;
+
+        private Bulkhead(String name, int maxConcurrent, Duration queueTimeout, Duration timeout) {
+            this.name = name;
+            this.permits = new Semaphore(maxConcurrent, true); // 먼저 기다린 호출부터
+            this.maxConcurrent = maxConcurrent;
+            this.queueTimeoutNanos = queueTimeout.toNanos();
+            // JDBC query timeout은 초 단위 - 올림 (500ms -> 1초)
+            this.timeoutSeconds = (int) ((timeout.toMillis() + 999) / 1000);
+            this.tx = new TransactionTemplate(transactionManager);
+            this.readOnlyTx = new TransactionTemplate(transactionManager);
+            this.readOnlyTx.setReadOnly(true);
+            if (timeoutSeconds > 0) {
+                this.tx.setTimeout(timeoutSeconds);
+                this.readOnlyTx.setTimeout(timeoutSeconds);
+            }
+
+            this.queueTime = Timer.builder("repository.query.policy.queue").tag("policy", name).register(registry);
+            this.rejected = Counter.builder("repository.query.policy.rejected").tag("policy", name).register(registry);
+            this.timeouts = Counter.builder("repository.query.policy.timeouts").tag("policy", name).register(registry);
+            Gauge.builder("repository.query.policy.active", permits, p -> this.maxConcurrent - p.availablePermits())
+                    .tag("policy", name).register(registry);
+        }
+
+        private void acquire() {
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            queueTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                rejected.increment();
+                throw new QueryRejectedException(name, "query policy '" + name + "' 동시 실행 한도(" + maxConcurrent
+                        + ") 초과 - " + TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos) + "ms 대기 후 거절");
+            }
+        }
+
+        private void release() {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.study.datajpa.repository;
+
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * {@link QueryPolicy} 동시 실행 한도가 차서 queue-timeout 안에 자리를 얻지 못했다. - 쿼리는 실행되지 않았으므로 나중에 다시 시도해도 된다.
+ */
+public class QueryRejectedException extends TransientDataAccessException {
+
+    private final String policy;
+
+    public QueryRejectedException(String policy, String message) {
+        super(message);
+        this.policy = policy;
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,20 @@
+package com.study.datajpa.repository;
+
+import java.lang.annotation.*;
+
+/**
+ * 읽기 전용 조회 - 조회한 엔티티의 스냅샷을 만들지 않는다.(dirty checking 제외)
+ * 메소드에 붙이거나, 리포지토리 인터페이스에 붙이면 조회 메소드(find/get/read/query/stream/count/exists...)에 기본 적용된다.
+ * - 트랜잭션 밖에서 호출 : readOnly 트랜잭션으로 실행 (조회 전 flush도 하지 않는다.)
+ * - 트랜잭션 안에서 호출 : 세션은 그대로 두고 org.hibernate.readOnly 쿼리 힌트만 적용된다.
+ *   -> 쿼리 메소드에 @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))를 같이 붙인다.
+ *
+ * 주의 : 이 조회로 처음 로딩된 엔티티는 변경해도 update가 나가지 않는다.(이미 영속 상태였던 엔티티는 그대로)
+ *
+ * @see ReadOnlyQueryAspect
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadOnlyQuery {
+}
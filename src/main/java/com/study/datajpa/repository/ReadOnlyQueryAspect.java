@@ -0,0 +1,71 @@
+package com.study.datajpa.repository;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ReadOnlyQuery} 처리
+ * - 트랜잭션이 없으면 readOnly 트랜잭션으로 실행 (JpaTransactionManager가 세션을 read-only, FlushMode.MANUAL로 만든다.)
+ *   이 트랜잭션은 aspect가 시작했고 이 호출만 쓰므로 세션 전체를 읽기 전용으로 해도 된다.
+ * - 이미 트랜잭션 안이면 세션은 건드리지 않는다. 세션을 read-only/MANUAL로 바꾸면 호출 중 로딩된 엔티티의 변경이 유실되고
+ *   flush 안 된 변경이 조회에 안 보인다. -> 쿼리마다 org.hibernate.readOnly 힌트(@QueryHints)로 그 쿼리가 로딩한 엔티티만 읽기 전용
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2) // QueryPolicyAspect 안쪽, RepositoryMetricsAspect 바깥 (지표가 이 트랜잭션 안에서 잡힌다.)
+public class ReadOnlyQueryAspect {
+
+    private final TransactionTemplate readOnlyTx;
+
+    private final Map<Class<?>, Map<Method, Boolean>> readOnlyMethods = new ConcurrentHashMap<>();
+
+    public ReadOnlyQueryAspect(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @Around("bean(*Repository)")
+    public Object applyReadOnly(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object target = joinPoint.getTarget();
+        boolean readOnly = readOnlyMethods.computeIfAbsent(target.getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                        method -> isReadOnlyQuery(target, method));
+        if (!readOnly) {
+            return joinPoint.proceed();
+        }
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return readOnlyTx.execute(status -> RepositoryAspects.proceed(joinPoint));
+        }
+        return joinPoint.proceed(); // 바깥 트랜잭션 - 쿼리 힌트만 적용된다.
+    }
+
+    private static boolean isReadOnlyQuery(Object target, Method method) {
+        if (AnnotatedElementUtils.hasAnnotation(method, ReadOnlyQuery.class)) {
+            return true;
+        }
+        if (!RepositoryAspects.isQueryMethod(method)) {
+            return false;
+        }
+        for (Class<?> type : ClassUtils.getAllInterfacesAsSet(target)) {
+            if (AnnotatedElementUtils.hasAnnotation(type, ReadOnlyQuery.class)) {
+                return true;
+            }
+        }
+        return AnnotatedElementUtils.hasAnnotation(ClassUtils.getUserClass(target), ReadOnlyQuery.class);
+    }
+}
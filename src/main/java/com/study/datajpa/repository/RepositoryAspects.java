@@ -0,0 +1,36 @@
+package com.study.datajpa.repository;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.regex.Pattern;
+
+/**
+ * 리포지토리 aspect 공통 - {@link ReadOnlyQueryAspect}, {@link QueryPolicyAspect}
+ */
+final class RepositoryAspects {
+
+    // 조회 메소드 (spring data 쿼리 메소드 접두어)
+    private static final Pattern QUERY_METHOD = Pattern.compile("^(find|get|read|query|search|stream|count|exists).*");
+
+    private RepositoryAspects() {
+    }
+
+    static boolean isQueryMethod(Method method) {
+        return QUERY_METHOD.matcher(method.getName()).matches();
+    }
+
+    /**
+     * TransactionTemplate 콜백 안에서 호출 - checked 예외는 UndeclaredThrowableException으로 감싼다.
+     */
+    static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.study.datajpa.repository;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * forward-only 커서(ScrollableResults)를 Stream으로 감싼다.
+ * getResultList()와 달리 전체를 List로 올리지 않고 fetchSize 만큼씩 DB에서 가져온다.
+ *
+ * 주의 : 커서가 열려있는 동안 커넥션을 잡고 있으므로 트랜잭션 안에서 호출하고, try-with-resources로 반드시 close 할 것
+ */
+final class ScrollingStreams {
+
+    static final int DEFAULT_FETCH_SIZE = 500;
+
+    private ScrollingStreams() {
+    }
+
+    /**
+     * @param evict true면 한 건을 다 소비하고 나서 영속성 컨텍스트에서 evict - 엔티티 조회일 때만 의미있다.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Stream<T> stream(EntityManager em, TypedQuery<T> query, boolean evict) {
+        org.hibernate.query.Query<T> hibernateQuery = query.unwrap(org.hibernate.query.Query.class);
+        ScrollableResults results = hibernateQuery
+                .setFetchSize(DEFAULT_FETCH_SIZE)
+                .setReadOnly(true)    // 스냅샷을 만들지 않는다.(dirty checking 대상 아님)
+                .setCacheable(false)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        Session session = evict ? em.unwrap(Session.class) : null;
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (!results.next()) {
+                    return false;
+                }
+                T row = (T) results.get(0);
+                action.accept(row);
+                if (session != null) {
+                    session.evict(row); // 소비가 끝난 엔티티는 바로 준영속 -> 1차 캐시가 계속 커지지 않는다.
+                }
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(results::close);
+    }
+}
@@ -0,0 +1,192 @@
+package com.study.datajpa.repository;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * 샤드 라우팅 테이블.
+ * - 샤드 i는 id [i * rangeSize, (i + 1) * rangeSize) 를 발급한다. (샤드마다 시퀀스 시작값을 rangeStart(i)로 맞춘다.)
+ * - member id -> 샤드 : '시작 id -> 샤드' TreeMap의 floorEntry. 재분배(assign)로 구간 주인이 바뀔 수 있다.
+ * - team id -> 샤드 : 발급한 샤드(homeShard)에 고정. 팀이 있는 회원은 팀과 같은 샤드에 저장한다.(FK, 팀 단위 조회)
+ *   -> 재분배는 팀이 없는 회원 구간만 옮길 수 있다.
+ * - fence : 재분배 중인 구간. 그 구간의 기존 회원 수정/삭제(writeTo)와 새 회원 insert(insert)는 거절한다.
+ * 조회는 락 없이 volatile 스냅샷을 읽고, 변경은 복사본을 만들어 교체한다.
+ */
+public class ShardRouter {
+
+    private final int shardCount;
+    private final long rangeSize;
+    private final AtomicInteger nextInsert = new AtomicInteger();
+    private volatile NavigableMap<Long, Integer> ranges;
+    private volatile List<long[]> fences = List.of();
+    // 쓰기는 read lock을 잡고 fence 확인 + 실행, fence는 write lock - 이미 fence를 통과한 쓰기가 끝날 때까지 기다린다.
+    private final ReadWriteLock fenceLock = new ReentrantReadWriteLock();
+
+    public ShardRouter(int shardCount, long rangeSize) {
+        if (shardCount < 1 || rangeSize < 1) {
+            throw new IllegalArgumentException("shardCount, rangeSize는 1 이상이어야 합니다.");
+        }
+        this.shardCount = shardCount;
+        this.rangeSize = rangeSize;
+        TreeMap<Long, Integer> initial = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            initial.put(rangeStart(shard), shard);
+        }
+        this.ranges = initial;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public long rangeStart(int shard) {
+        return shard * rangeSize;
+    }
+
+    public long rangeEnd(int shard) {
+        return rangeStart(shard) + rangeSize;
+    }
+
+    public int shardForMember(long id) {
+        Map.Entry<Long, Integer> entry = ranges.floorEntry(id);
+        return entry == null ? 0 : entry.getValue();
+    }
+
+    public int homeShard(long id) {
+        return (int) Math.max(0, Math.min(id / rangeSize, shardCount - 1));
+    }
+
+    public int shardForTeam(long teamId) {
+        return homeShard(teamId);
+    }
+
+    /**
+     * 팀이 없는 새 회원 - 샤드를 돌아가며 고른다.
+     */
+    public int nextShardForInsert() {
+        return Math.floorMod(nextInsert.getAndIncrement(), shardCount);
+    }
+
+    /**
+     * [fromId, toId) 가 한 샤드 소유면 그 샤드, 여러 샤드에 걸치면 -1
+     */
+    public int ownerOf(long fromId, long toId) {
+        NavigableMap<Long, Integer> snapshot = ranges;
+        int owner = snapshot.floorEntry(fromId).getValue();
+        for (int shard : snapshot.subMap(fromId, false, toId, false).values()) {
+            if (shard != owner) {
+                return -1;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * [fromId, toId) 의 주인을 shard로 바꾼다. (MemberReshardService가 데이터를 옮긴 뒤 호출)
+     */
+    public synchronized void assign(long fromId, long toId, int shard) {
+        if (fromId >= toId || shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("잘못된 구간 [" + fromId + ", " + toId + ") -> " + shard);
+        }
+        TreeMap<Long, Integer> copy = new TreeMap<>(ranges);
+        int ownerAfter = copy.floorEntry(toId).getValue();
+        copy.subMap(fromId, true, toId, true).clear();
+        copy.put(fromId, shard);
+        copy.put(toId, ownerAfter);
+
+        // 이웃한 구간의 주인이 같으면 합친다.
+        Integer previous = null;
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(copy).entrySet()) {
+            if (entry.getValue().equals(previous)) {
+                copy.remove(entry.getKey());
+            }
+            previous = entry.getValue();
+        }
+        ranges = copy;
+    }
+
+    /**
+     * 기존 회원 id의 샤드에서 write를 실행한다. 재분배 중인 구간이면 실행하지 않고 TransientDataAccessResourceException (다시 시도 가능)
+     */
+    public <T> T writeTo(long id, IntFunction<T> write) {
+        return insert(() -> {
+            checkNotFenced(id);
+            return write.apply(shardForMember(id));
+        });
+    }
+
+    /**
+     * 새 회원 insert - id는 트랜잭션 안에서 발급되므로 insert 후 checkNotFenced로 확인한다.(예외 -> 롤백)
+     * 커밋까지 read lock을 잡고 있으므로 fence는 발급만 되고 커밋 전인 insert가 끝나기를 기다린다.
+     */
+    public <T> T insert(Supplier<T> write) {
+        Lock lock = fenceLock.readLock();
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void checkNotFenced(long id) {
+        if (isFenced(id)) {
+            throw new TransientDataAccessResourceException("회원 id " + id + "는 샤드 재분배 중입니다. 잠시 후 다시 시도하세요.");
+        }
+    }
+
+    /**
+     * [fromId, toId) 쓰기를 막는다. 돌아오면 진행 중인 쓰기(insert 포함)는 모두 커밋/롤백됐다. (MemberReshardService가 복사 전에 호출)
+     */
+    public void fence(long fromId, long toId) {
+        Lock lock = fenceLock.writeLock();
+        lock.lock();
+        try {
+            List<long[]> copy = new ArrayList<>(fences);
+            copy.add(new long[]{fromId, toId});
+            fences = copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unfence(long fromId, long toId) {
+        Lock lock = fenceLock.writeLock();
+        lock.lock();
+        try {
+            List<long[]> copy = new ArrayList<>(fences);
+            copy.removeIf(fence -> fence[0] == fromId && fence[1] == toId);
+            fences = copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isFenced(long id) {
+        for (long[] fence : fences) {
+            if (id >= fence[0] && id < fence[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 시작 id -> 샤드 (변경 불가 스냅샷)
+     */
+    public Map<Long, Integer> getRanges() {
+        return Collections.unmodifiableMap(new TreeMap<>(ranges));
+    }
+}
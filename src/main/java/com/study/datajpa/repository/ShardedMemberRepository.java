@@ -0,0 +1,308 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Member를 여러 DB(샤드)에 나눠 저장한다. (app.sharding.enabled=true, ShardingConfig)
+ * - save / findById / delete : ShardRouter가 고른 샤드 하나만 간다.
+ * - findByAge / findByNames / count : 모든 샤드에 동시에 보내고(repositoryExecutor) 결과를 합친다.
+ *   페이지 조회는 샤드마다 정렬된 앞 (offset + size)건을 가져와 k-way merge 한 뒤 [offset, offset + size)를 자른다.
+ *   -> 뒤 페이지일수록 샤드 수 * (offset + size) 만큼 읽는다. max-scatter-window를 넘으면 거절 (깊은 페이지는 keyset으로)
+ * 팀은 기준 데이터 - 팀을 만든 샤드(homeShard)에 있고 그 팀 회원도 같은 샤드에 저장한다.
+ * 기존 회원 수정/삭제는 재분배 중인 구간이면 거절된다.(ShardRouter.writeTo - TransientDataAccessResourceException)
+ * 샤드 하나라도 실패하면 전체 조회가 실패한다. (부분 결과를 돌려주지 않는다.)
+ */
+@Slf4j
+@Repository
+public class ShardedMemberRepository implements AutoCloseable {
+
+    // 정렬 가능한 속성 - JPQL order by와 merge 비교 순서가 같아야 한다. (null은 H2 기본과 같이 asc일 때 앞)
+    private static final Map<String, Comparator<Member>> SORTABLE = Map.of(
+            "id", Comparator.comparing(Member::getId),
+            "userName", Comparator.comparing(Member::getUserName, Comparator.nullsFirst(Comparator.naturalOrder())),
+            "age", Comparator.comparingInt(Member::getAge));
+
+    private final List<MemberShard> shards;
+    private final ShardRouter router;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final int maxScatterWindow;
+    private final int inClauseChunkSize;
+    private final Counter scatterFailures;
+
+    public ShardedMemberRepository(List<MemberShard> shards, ShardRouter router, Executor executor,
+                                   MeterRegistry meterRegistry, int maxScatterWindow, int inClauseChunkSize) {
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.maxScatterWindow = maxScatterWindow;
+        this.inClauseChunkSize = InListChunks.powerOfTwoFloor(inClauseChunkSize);
+        this.scatterFailures = meterRegistry.counter("shard.scatter.failures");
+    }
+
+    public List<MemberShard> getShards() {
+        return shards;
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    /******************************************************************************************/
+    /*********************************** 샤드 하나 **********************************************/
+    /******************************************************************************************/
+
+    public Team saveTeam(Team team) {
+        if (team.getId() != null) {
+            return shardOfTeam(team.getId()).write("saveTeam", em -> em.merge(team));
+        }
+        return shards.get(router.nextShardForInsert()).write("saveTeam", em -> {
+            em.persist(team);
+            return team;
+        });
+    }
+
+    public Optional<Team> findTeam(Long teamId) {
+        return Optional.ofNullable(shardOfTeam(teamId).read("findTeam", em -> em.find(Team.class, teamId)));
+    }
+
+    /**
+     * 새 회원 - 팀이 있으면 팀 샤드, 없으면 돌아가며 저장. id는 그 샤드의 구간에서 발급된다.
+     * 이미 있는 회원 - id 구간의 샤드에 merge (팀을 다른 샤드의 팀으로 바꿀 수는 없다.)
+     * 둘 다 재분배 중인 구간이면 거절 (새 회원은 발급된 id가 그 구간이면 롤백)
+     */
+    public Member save(Member member) {
+        if (member.getId() == null) {
+            MemberShard shard = member.getTeam() == null
+                    ? shards.get(router.nextShardForInsert())
+                    : shardOfTeam(member.getTeam().getId());
+            return router.insert(() -> shard.write("save", em -> {
+                em.persist(member);
+                router.checkNotFenced(member.getId());
+                return member;
+            }));
+        }
+        return router.writeTo(member.getId(), shard -> shards.get(shard).write("save", em -> em.merge(member)));
+    }
+
+    public Optional<Member> findById(Long id) {
+        return Optional.ofNullable(shardOf(id).read("findById", em ->
+                em.createQuery("select m from Member m left join fetch m.team where m.id = :id", Member.class)
+                        .setParameter("id", id)
+                        .getResultList()
+                        .stream()
+                        .findFirst()
+                        .orElse(null)));
+    }
+
+    public void delete(Member member) {
+        deleteById(member.getId());
+    }
+
+    public void deleteById(Long id) {
+        router.writeTo(id, shard -> shards.get(shard).write("delete", em -> {
+            Member member = em.find(Member.class, id);
+            if (member != null) {
+                em.remove(member);
+            }
+            return null;
+        }));
+    }
+
+    /******************************************************************************************/
+    /*********************************** 전체 샤드 *********************************************/
+    /******************************************************************************************/
+
+    public Page<Member> findByAge(int age, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            throw new IllegalArgumentException("샤드 조회는 페이지 크기가 필요합니다.");
+        }
+        long window = pageable.getOffset() + pageable.getPageSize();
+        if (window > maxScatterWindow) {
+            throw new IllegalArgumentException("offset + size(" + window + ")가 max-scatter-window("
+                    + maxScatterWindow + ")를 넘습니다. keyset 페이징을 사용하세요.");
+        }
+
+        Sort sort = pageable.getSort();
+        String jpql = "select m from Member m left join fetch m.team where m.age = :age order by " + orderBy(sort);
+        List<List<Member>> perShard = scatter("findByAge", shard -> shard.read("findByAge", em ->
+                em.createQuery(jpql, Member.class)
+                        .setParameter("age", age)
+                        .setMaxResults((int) window)
+                        .getResultList()));
+
+        List<Member> merged = mergeSorted(perShard, comparator(sort), (int) window);
+        int offset = (int) Math.min(pageable.getOffset(), merged.size());
+        return PageableExecutionUtils.getPage(merged.subList(offset, merged.size()), pageable, () -> countByAge(age));
+    }
+
+    public List<Member> findByNames(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<List<Member>> perShard = scatter("findByNames", shard -> shard.read("findByNames", em ->
+                InListChunks.execute(names, inClauseChunkSize,
+                        chunk -> em.createQuery("select m from Member m left join fetch m.team where m.userName in :names", Member.class)
+                                .setParameter("names", chunk)
+                                .getResultList())));
+        List<Member> result = new ArrayList<>();
+        perShard.forEach(result::addAll);
+        return result;
+    }
+
+    public long count() {
+        return scatter("count", shard -> shard.read("count", em ->
+                em.createNamedQuery("Member.countAll", Long.class).getSingleResult()))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long countByAge(int age) {
+        return scatter("countByAge", shard -> shard.read("countByAge", em ->
+                em.createNamedQuery("Member.totalCount", Long.class).setParameter("age", age).getSingleResult()))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 샤드마다 작업을 repositoryExecutor에서 동시에 실행하고 샤드 순서대로 결과를 모은다.
+     * 전체 응답시간(가장 느린 샤드)은 shard.scatter{operation}
+     */
+    private <T> List<T> scatter(String operation, Function<MemberShard, T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        try {
+            for (MemberShard shard : shards) {
+                futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), executor));
+            }
+            List<T> results = new ArrayList<>(shards.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } catch (RuntimeException e) {
+            scatterFailures.increment();
+            futures.forEach(future -> future.cancel(false));
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(operation + " 샤드 조회 실패", cause);
+        } finally {
+            sample.stop(meterRegistry.timer("shard.scatter", "operation", operation));
+        }
+    }
+
+    /**
+     * 정렬된 목록들을 앞에서부터 limit 건까지 합친다. (PriorityQueue - 샤드 수 k, O(limit * log k))
+     */
+    static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> order, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head(), b.head()));
+        for (List<T> list : sortedLists) {
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list));
+            }
+        }
+        List<T> merged = new ArrayList<>(limit);
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor<T> {
+        private final List<T> list;
+        private int position;
+
+        private Cursor(List<T> list) {
+            this.list = list;
+        }
+
+        private T head() {
+            return list.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < list.size();
+        }
+    }
+
+    /**
+     * 마지막 정렬키로 id를 붙인다. - 샤드마다 같은 값의 순서가 달라지지 않게 (페이지 경계에서 중복/누락 방지)
+     */
+    private static String orderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            sortable(order.getProperty());
+            orders.add("m." + order.getProperty() + (order.isAscending() ? " asc" : " desc"));
+        }
+        if (sort.getOrderFor("id") == null) {
+            orders.add("m.id asc");
+        }
+        return String.join(", ", orders);
+    }
+
+    private static Comparator<Member> comparator(Sort sort) {
+        Comparator<Member> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Member> property = sortable(order.getProperty());
+            comparator = comparator.thenComparing(order.isAscending() ? property : property.reversed());
+        }
+        if (sort.getOrderFor("id") == null) {
+            comparator = comparator.thenComparing(SORTABLE.get("id"));
+        }
+        return comparator;
+    }
+
+    private static Comparator<Member> sortable(String property) {
+        Comparator<Member> comparator = SORTABLE.get(property);
+        if (comparator == null) {
+            throw new IllegalArgumentException("샤드 조회에서 정렬할 수 없는 속성 : " + property + " (가능 : " + SORTABLE.keySet() + ")");
+        }
+        return comparator;
+    }
+
+    private MemberShard shardOf(Long memberId) {
+        return shards.get(router.shardForMember(memberId));
+    }
+
+    private MemberShard shardOfTeam(Long teamId) {
+        return shards.get(router.shardForTeam(teamId));
+    }
+
+    @Override
+    public void close() {
+        for (MemberShard shard : shards) {
+            try {
+                shard.close();
+            } catch (RuntimeException e) {
+                log.warn("샤드 종료 실패 - {}", shard.getName(), e);
+            }
+        }
+    }
+}
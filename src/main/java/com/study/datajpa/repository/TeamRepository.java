@@ -1,8 +1,10 @@
 package com.study.datajpa.repository;
 
 
+import com.study.datajpa.dto.TeamStatsDto;
 import com.study.datajpa.entity.Team;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -23,8 +25,37 @@ public class TeamRepository {
         em.remove(team);
     }
 
+    @Transactional(readOnly = true)
     public List<Team> findAll() {
-        return em.createQuery("select t from Team t", Team.class)
+        return em.createNamedQuery("Team.findAllTeams", Team.class)
+                .getResultList();
+    }
+
+    /**
+     * 팀 + 회원을 fetch join으로 한 번에 조회 (쿼리 1번)
+     * 컬렉션 fetch join은 row가 회원 수만큼 뻥튀기되므로 distinct로 팀 중복 제거
+     * 주의 : 컬렉션 fetch join에 setFirstResult/setMaxResults를 쓰면 메모리에서 페이징한다.(경고 로그) -> 페이징은 아래 메소드 사용
+     */
+    @QueryPolicy("heavy")
+    public List<Team> findAllWithMembers() {
+        return em.createNamedQuery("Team.findAllWithMembers", Team.class)
+                .getResultList();
+    }
+
+    /**
+     * 팀 페이징 + 회원 fetch join (쿼리 2번)
+     * 1. 팀 id만 DB에서 페이징  2. 해당 id의 팀만 회원과 fetch join
+     */
+    public List<Team> findAllWithMembers(int offset, int limit) {
+        List<Long> teamIds = em.createNamedQuery("Team.findIdsOrderById", Long.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+        if (teamIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createNamedQuery("Team.findWithMembersByIds", Team.class)
+                .setParameter("teamIds", teamIds)
                 .getResultList();
     }
 
@@ -33,8 +64,27 @@ public class TeamRepository {
         return Optional.ofNullable(team);
     }
 
+    /**
+     * 팀 통계 (회원 수, 평균 나이) - 팀당 stripe 개 row의 합계만 읽는다.(회원 수와 무관)
+     * 통계 row가 아직 없는 팀은 0
+     */
+    @Transactional(readOnly = true)
+    public TeamStatsDto findStats(Long teamId) {
+        return em.createNamedQuery("TeamStats.findByTeamId", TeamStatsDto.class)
+                .setParameter("teamId", teamId)
+                .getResultStream()
+                .findFirst()
+                .orElseGet(() -> new TeamStatsDto(teamId, 0L, 0L));
+    }
+
+    @Transactional(readOnly = true)
+    public List<TeamStatsDto> findAllStats() {
+        return em.createNamedQuery("TeamStats.findAllTeams", TeamStatsDto.class)
+                .getResultList();
+    }
+
     public long count() {
-        return em.createQuery("select count(t) from Team t", Long.class)
+        return em.createNamedQuery("Team.countAll", Long.class)
                 .getSingleResult();
     }
 
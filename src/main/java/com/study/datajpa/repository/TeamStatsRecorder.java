@@ -0,0 +1,292 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * TeamStats 증감분 기록
+ * - 회원 insert/delete/팀 변경/나이 변경은 엔티티 이벤트로 받고, 벌크 연산은 호출하는 쪽에서 record()로 넘긴다.
+ * - 트랜잭션(세션) 동안 팀별로 모아두었다가 커밋 직전(flush 이후) 같은 트랜잭션에서 team_stats에 한 번에 더한다.
+ *   롤백되면 버린다.
+ * - 트랜잭션마다 stripe 하나를 골라 그 row에만 더하고, 팀 id 순으로 update 해서 트랜잭션끼리 데드락이 나지 않게 한다.
+ * - 통계 row가 없는 팀은 별도 커넥션(autocommit)으로 0 row를 먼저 만든다. (다른 트랜잭션과 겹쳐 중복 키가 나도 무시 -> 사용자 트랜잭션은 롤백되지 않는다.)
+ */
+@Slf4j
+@Component
+public class TeamStatsRecorder implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final Map<SharedSessionContractImplementor, PendingStats> pending = new ConcurrentHashMap<>();
+    private final DataSource dataSource;
+    private final int stripes;
+
+    public TeamStatsRecorder(DataSource dataSource, @Value("${app.team-stats.stripes:8}") int stripes) {
+        this.dataSource = dataSource;
+        this.stripes = Math.max(1, stripes);
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * 벌크 연산 등 엔티티 이벤트가 없는 변경의 증감분 - 현재 트랜잭션이 커밋될 때 반영된다.
+     */
+    public void record(EntityManager em, Long teamId, long memberCountDelta, long ageSumDelta) {
+        pending(em.unwrap(SessionImplementor.class)).add(teamId, memberCountDelta, ageSumDelta);
+    }
+
+    /**
+     * age 이상인 회원 나이 +1 (JPQL 벌크 update 한 번) - 팀별 대상 회원 수만큼 나이 합계를 더한다.
+     * 1. 대상 row를 for update로 잡는다. (커서로 넘기기만 하고 메모리에 올리지 않는다. - group by 조회는 for update 불가)
+     * 2. 같은 조건으로 팀별 회원 수 집계 (group by team_id)
+     * 3. 같은 조건으로 update
+     * -> 잡은 row는 집계와 update 사이에 나이/팀이 바뀌지 않는다. 그 사이 커밋된 새 회원은 TeamStatsReconciler가 맞춘다.
+     * 벌크 update는 영속성 컨텍스트를 거치지 않으므로 호출 후 em.clear()가 필요하다.
+     */
+    public int bulkAgePlus(EntityManager em, int age) {
+        if (lockMembersFromAge(em, age) == 0) {
+            return 0;
+        }
+        List<Object[]> countByTeam = em.createNamedQuery("Member.countByTeamFromAge", Object[].class)
+                .setParameter("age", age)
+                .getResultList();
+        int updated = em.createNamedQuery("Member.incrementAgeFrom")
+                .setParameter("age", age)
+                .executeUpdate();
+        for (Object[] row : countByTeam) {
+            record(em, (Long) row[0], 0, (Long) row[1]);
+        }
+        return updated;
+    }
+
+    private static long lockMembersFromAge(EntityManager em, int age) {
+        long locked = 0;
+        try (ScrollableResults rows = em.createNativeQuery("select memeber_id from member where age >= ? for update")
+                .setParameter(1, age)
+                .unwrap(NativeQuery.class)
+                .setFetchSize(ScrollingStreams.DEFAULT_FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                locked++;
+            }
+        }
+        return locked;
+    }
+
+    /*******************************************엔티티 이벤트******************************************************/
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Long teamId = teamId(stateOf(event.getPersister(), event.getState(), "team"));
+            if (teamId != null) {
+                pending(event.getSession()).add(teamId, 1, (Integer) stateOf(event.getPersister(), event.getState(), "age"));
+            }
+        } else if (event.getEntity() instanceof Team) {
+            pending(event.getSession()).created.add((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            // 스냅샷 없이 update 된 경우(session.update 등) - 이전 값을 몰라서 reconcile로 맞춘다.
+            log.debug("TeamStats - 이전 상태가 없는 회원 update 건너뜀 : {}", event.getId());
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Long oldTeamId = teamId(stateOf(persister, oldState, "team"));
+        Long newTeamId = teamId(stateOf(persister, event.getState(), "team"));
+        int oldAge = (Integer) stateOf(persister, oldState, "age");
+        int newAge = (Integer) stateOf(persister, event.getState(), "age");
+        if (Objects.equals(oldTeamId, newTeamId) && oldAge == newAge) {
+            return;
+        }
+        PendingStats stats = pending(event.getSession());
+        if (oldTeamId != null) {
+            stats.add(oldTeamId, -1, -oldAge);
+        }
+        if (newTeamId != null) {
+            stats.add(newTeamId, 1, newAge);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Long teamId = teamId(stateOf(event.getPersister(), event.getDeletedState(), "team"));
+            if (teamId != null) {
+                pending(event.getSession()).add(teamId, -1, -(Integer) stateOf(event.getPersister(), event.getDeletedState(), "age"));
+            }
+        } else if (event.getEntity() instanceof Team) {
+            pending(event.getSession()).deleted.add((Long) event.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static Object stateOf(EntityPersister persister, Object[] state, String property) {
+        return state[persister.getEntityMetamodel().getPropertyIndex(property)];
+    }
+
+    private static Long teamId(Object team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier(); // 프록시 초기화 x
+        }
+        return ((Team) team).getId();
+    }
+
+    /*******************************************커밋 직전 반영*****************************************************/
+
+    private PendingStats pending(SessionImplementor session) {
+        return pending.computeIfAbsent(session, s -> {
+            PendingStats stats = new PendingStats(ThreadLocalRandom.current().nextInt(stripes));
+            session.getActionQueue().registerProcess(flushing -> {
+                PendingStats toApply = pending.remove(flushing);
+                if (toApply != null) {
+                    flushing.doWork(toApply::apply);
+                }
+            });
+            session.getActionQueue().registerProcess((success, completed) -> pending.remove(completed)); // 롤백
+            return stats;
+        });
+    }
+
+    private final class PendingStats {
+        final int stripe;
+        final SortedMap<Long, long[]> deltas = new TreeMap<>(); // 팀 id 순으로 update (락 순서 고정)
+        final SortedSet<Long> created = new TreeSet<>();
+        final SortedSet<Long> deleted = new TreeSet<>();
+
+        PendingStats(int stripe) {
+            this.stripe = stripe;
+        }
+
+        void add(Long teamId, long memberCount, long ageSum) {
+            long[] delta = deltas.computeIfAbsent(teamId, id -> new long[2]);
+            delta[0] += memberCount;
+            delta[1] += ageSum;
+        }
+
+        void apply(java.sql.Connection connection) throws SQLException {
+            if (!created.isEmpty()) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "insert into team_stats (team_id, stripe, member_count, age_sum) values (?, ?, 0, 0)")) {
+                    for (Long teamId : created) {
+                        for (int s = 0; s < stripes; s++) {
+                            insert.setLong(1, teamId);
+                            insert.setInt(2, s);
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            }
+
+            List<Long> teamIds = new ArrayList<>();
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update team_stats set member_count = member_count + ?, age_sum = age_sum + ? where team_id = ? and stripe = ?")) {
+                for (Map.Entry<Long, long[]> entry : deltas.entrySet()) {
+                    long[] delta = entry.getValue();
+                    if (delta[0] == 0 && delta[1] == 0) {
+                        continue;
+                    }
+                    update.setLong(1, delta[0]);
+                    update.setLong(2, delta[1]);
+                    update.setLong(3, entry.getKey());
+                    update.setInt(4, stripe);
+                    update.addBatch();
+                    teamIds.add(entry.getKey());
+                }
+                if (!teamIds.isEmpty()) {
+                    int[] counts = update.executeBatch();
+                    List<Long> missing = new ArrayList<>();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            missing.add(teamIds.get(i));
+                        }
+                    }
+                    if (!missing.isEmpty()) {
+                        seedStripes(missing);
+                        for (Long teamId : missing) {
+                            long[] delta = deltas.get(teamId);
+                            update.setLong(1, delta[0]);
+                            update.setLong(2, delta[1]);
+                            update.setLong(3, teamId);
+                            update.setInt(4, stripe);
+                            update.addBatch();
+                        }
+                        update.executeBatch();
+                    }
+                }
+            }
+
+            if (!deleted.isEmpty()) {
+                try (PreparedStatement delete = connection.prepareStatement("delete from team_stats where team_id = ?")) {
+                    for (Long teamId : deleted) {
+                        delete.setLong(1, teamId);
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+            }
+        }
+
+        // 통계 row가 없던 팀(이 기능 이전에 만든 팀, stripes를 늘린 경우) - 별도 커넥션에서 row마다 커밋하고 이미 있으면(중복 키) 넘어간다.
+        // 사용자 트랜잭션 커넥션에서 만들면 동시에 만든 트랜잭션과 중복 키가 나서 커밋 직전에 사용자 변경까지 롤백된다.
+        // 증감분은 돌아가서 update로 더한다.
+        private void seedStripes(List<Long> teamIds) throws SQLException {
+            try (java.sql.Connection connection = dataSource.getConnection();
+                 PreparedStatement insert = connection.prepareStatement(
+                         "insert into team_stats (team_id, stripe, member_count, age_sum) values (?, ?, 0, 0)")) {
+                connection.setAutoCommit(true);
+                for (Long teamId : teamIds) {
+                    for (int s = 0; s < stripes; s++) {
+                        insert.setLong(1, teamId);
+                        insert.setInt(2, s);
+                        try {
+                            insert.executeUpdate();
+                        } catch (SQLIntegrityConstraintViolationException e) {
+                            log.debug("TeamStats - 이미 있는 stripe row : team {} stripe {}", teamId, s);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.study.datajpa.service;
+
+/**
+ * 청크가 커밋될 때마다 호출된다. - 진행률 표시, 재시작 지점(lastId) 저장 용도
+ */
+@FunctionalInterface
+public interface BulkUpdateListener {
+
+    BulkUpdateListener NONE = progress -> { };
+
+    void onChunkCommitted(BulkUpdateProgress progress);
+}
@@ -0,0 +1,29 @@
+package com.study.datajpa.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 청크 단위 벌크 업데이트 진행 상황
+ * lastId를 저장해뒀다가 실패 시 startAfterId로 넘기면 커밋된 청크 다음부터 이어서 실행한다.
+ */
+@Getter
+@ToString
+public class BulkUpdateProgress {
+
+    private final long lastId;     // 마지막으로 커밋된 청크의 마지막 id
+    private final long maxId;      // 작업 시작 시점의 최대 id - 여기까지 처리하면 종료
+    private final long updated;    // 지금까지 변경된 row 수
+    private final int chunks;      // 지금까지 커밋된 청크 수
+
+    public BulkUpdateProgress(long lastId, long maxId, long updated, int chunks) {
+        this.lastId = lastId;
+        this.maxId = maxId;
+        this.updated = updated;
+        this.chunks = chunks;
+    }
+
+    public boolean isDone() {
+        return lastId >= maxId;
+    }
+}
@@ -0,0 +1,27 @@
+package com.study.datajpa.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class CsvImportResult {
+
+    private final long rows;          // 저장한 회원 수
+    private final long skipped;       // 형식이 잘못되어 건너뛴 줄 수
+    private final int teamsCreated;   // 새로 만든 팀 수
+    private final long elapsedMillis;
+    private final long peakHeapBytes; // 적재 중 측정한 최대 힙 사용량
+
+    public CsvImportResult(long rows, long skipped, int teamsCreated, long elapsedMillis, long peakHeapBytes) {
+        this.rows = rows;
+        this.skipped = skipped;
+        this.teamsCreated = teamsCreated;
+        this.elapsedMillis = elapsedMillis;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,324 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.InListChunks;
+import com.study.datajpa.repository.MemberCountCache;
+import com.study.datajpa.repository.TeamStatsRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 회원 나이 증감 write-behind 버퍼 (app.age-write-buffer.enabled=true)
+ *
+ * 같은 회원 나이를 초당 여러 번 바꾸면 호출마다 트랜잭션 + dirty checking + update가 나간다.
+ * 여기서는 addAge(id, delta)를 id별로 메모리에 합쳐두고(ConcurrentHashMap.merge) 한 트랜잭션의 JDBC batch update로 반영한다.
+ * - 가장 오래된 변경이 max-delay를 넘었거나, 버퍼의 회원 수가 flush-threshold에 닿으면 flush
+ * - 종료(@PreDestroy) 시 남은 변경을 모두 반영
+ * - 반영 실패 시 증감분을 버퍼에 되돌리고 다음 flush에서 다시 시도
+ * - addAge / getPendingDelta는 read lock, 버퍼 비우기(flush 시작)/되돌리기/종료 표시는 write lock
+ *   -> 종료 표시 후에는 진행 중인 addAge가 없으므로 마지막 flush가 모든 변경을 반영한다.
+ *
+ * 주의
+ * - 반영 전까지는 DB/조회 결과에 보이지 않는다. (getPendingDelta로 확인) 프로세스가 죽으면 최대 max-delay 만큼의 변경을 잃는다.
+ * - 엔티티 이벤트가 없으므로 2차 캐시/카운트 캐시/조회 캐시/팀 통계는 여기서 직접 맞춘다. (MemberBulkUpdateService와 같은 방식)
+ * - version도 올리므로 같은 회원을 수정 중인 JPA 트랜잭션은 낙관적 락 충돌이 날 수 있다. (@OptimisticRetry)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.age-write-buffer", name = "enabled", havingValue = "true")
+public class MemberAgeWriteBuffer {
+
+    private static final String UPDATE_AGE = "update member set age = age + ?, version = version + 1 where memeber_id = ?";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, Long> inFlight = Map.of(); // 버퍼에서 꺼냈지만 아직 커밋 전 (flushLock 안에서만 바뀐다.)
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private final AtomicLong oldestPendingNanos = new AtomicLong(); // 0 - 비어있음
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile boolean closed;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate flushTx;
+    private final EntityManagerFactory entityManagerFactory;
+    private final MemberCountCache countCache;
+    private final MemberLookupService lookupService;
+    private final TeamStatsRecorder teamStatsRecorder;
+    private final ScheduledExecutorService scheduler;
+    private final long maxDelayNanos;
+    private final long tickMillis;
+    private final int flushThreshold;
+    private final int inClauseChunkSize;
+
+    private final Counter updates;
+    private final Counter flushedRows;
+    private final Counter droppedRows;
+    private final Counter failures;
+    private final Timer flushTimer;
+
+    public MemberAgeWriteBuffer(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                EntityManagerFactory entityManagerFactory,
+                                MemberCountCache countCache,
+                                MemberLookupService lookupService,
+                                TeamStatsRecorder teamStatsRecorder,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.age-write-buffer.max-delay:200ms}") Duration maxDelay,
+                                @Value("${app.age-write-buffer.flush-threshold:1000}") int flushThreshold,
+                                @Value("${app.in-clause.max-chunk-size:512}") int inClauseChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTx = new TransactionTemplate(transactionManager);
+        this.flushTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManagerFactory = entityManagerFactory;
+        this.countCache = countCache;
+        this.lookupService = lookupService;
+        this.teamStatsRecorder = teamStatsRecorder;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.flushThreshold = Math.max(1, flushThreshold);
+        this.inClauseChunkSize = InListChunks.powerOfTwoFloor(inClauseChunkSize);
+
+        this.updates = meterRegistry.counter("member.age-buffer.updates");
+        this.flushedRows = meterRegistry.counter("member.age-buffer.flushed");
+        this.droppedRows = meterRegistry.counter("member.age-buffer.dropped");
+        this.failures = meterRegistry.counter("member.age-buffer.failures");
+        this.flushTimer = meterRegistry.timer("member.age-buffer.flush");
+        Gauge.builder("member.age-buffer.pending", pending, Map::size).register(meterRegistry);
+
+        // max-delay의 1/4 간격으로 확인 - 반영 지연은 최대 max-delay + 1/4 + flush 시간
+        this.tickMillis = Math.max(10, maxDelay.toMillis() / 4);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-age-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // flush는 em(필드 주입)을 쓰므로 주입이 끝난 뒤에 시작한다.
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushIfDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 나이 증감을 버퍼에 합친다. (DB 반영은 나중에)
+     */
+    public void addAge(Long memberId, int delta) {
+        Lock lock = bufferLock.readLock();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("MemberAgeWriteBuffer가 종료되었습니다.");
+            }
+            if (delta == 0) {
+                return;
+            }
+            pending.merge(memberId, (long) delta, Long::sum);
+            oldestPendingNanos.compareAndSet(0, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        updates.increment();
+
+        if (pending.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushIfDue);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false); // 종료 중 - close()가 남은 변경을 반영한다.
+            }
+        }
+    }
+
+    /**
+     * 아직 커밋되지 않은 증감분 (조회 결과에 더해서 보여줄 때) - 버퍼 + 반영 중인 것
+     */
+    public long getPendingDelta(Long memberId) {
+        Lock lock = bufferLock.readLock();
+        lock.lock();
+        try {
+            return pending.getOrDefault(memberId, 0L) + inFlight.getOrDefault(memberId, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 버퍼에 쌓인 회원 수 (반영 중인 것은 제외)
+     */
+    public int getPendingSize() {
+        return pending.size();
+    }
+
+    private void flushIfDue() {
+        try {
+            long oldest = oldestPendingNanos.get();
+            boolean due = flushRequested.getAndSet(false) || pending.size() >= flushThreshold
+                    || (oldest != 0 && System.nanoTime() - oldest >= maxDelayNanos);
+            if (due) {
+                flush();
+            }
+        } catch (RuntimeException e) {
+            log.warn("회원 나이 버퍼 반영 실패 - 다음 주기에 다시 시도 (대기 {}건)", pending.size(), e);
+        }
+    }
+
+    /**
+     * 버퍼를 비우고 한 트랜잭션으로 반영한다.
+     *
+     * @return 반영된 회원 수
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            // 버퍼 -> inFlight : addAge/getPendingDelta와 겹치지 않게 write lock 안에서 옮긴다.
+            Map<Long, Long> deltas = new HashMap<>();
+            Lock lock = bufferLock.writeLock();
+            lock.lock();
+            try {
+                pending.forEach((memberId, delta) -> {
+                    if (delta != 0) {
+                        deltas.put(memberId, delta);
+                    }
+                });
+                pending.clear();
+                oldestPendingNanos.set(0);
+                inFlight = deltas;
+            } finally {
+                lock.unlock();
+            }
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> updatedIds;
+            Timer.Sample sample = Timer.start();
+            try {
+                updatedIds = flushTx.execute(status -> write(deltas));
+                inFlight = Map.of(); // 커밋됨 - 이제 DB에 보인다.
+            } catch (RuntimeException e) {
+                failures.increment();
+                lock.lock();
+                try {
+                    deltas.forEach((memberId, delta) -> pending.merge(memberId, delta, Long::sum));
+                    inFlight = Map.of();
+                    oldestPendingNanos.compareAndSet(0, System.nanoTime());
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            } finally {
+                sample.stop(flushTimer);
+            }
+
+            evict(updatedIds);
+            flushedRows.increment(updatedIds.size());
+            droppedRows.increment(deltas.size() - updatedIds.size());
+            return updatedIds.size();
+        }
+    }
+
+    private List<Long> write(Map<Long, Long> deltas) {
+        // id 순으로 update - 동시에 도는 다른 batch와 락 순서가 같아서 데드락이 나지 않는다.
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        Collections.sort(ids);
+
+        // 팀 통계 - 존재하는 회원만 update 되므로 여기서 읽은 회원 = 반영되는 회원
+        List<Long[]> rows = InListChunks.execute(ids, inClauseChunkSize, chunk -> jdbcTemplate.query(
+                "select memeber_id, team_id from member where memeber_id in ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") for update",
+                (rs, rowNum) -> new Long[]{rs.getLong(1), rs.getObject(2, Long.class)},
+                chunk.toArray()));
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> existingIds = new ArrayList<>(rows.size());
+        Map<Long, Long> ageSumByTeam = new HashMap<>();
+        for (Long[] row : rows) {
+            existingIds.add(row[0]);
+            if (row[1] != null) {
+                ageSumByTeam.merge(row[1], deltas.get(row[0]), Long::sum);
+            }
+        }
+        Collections.sort(existingIds);
+
+        List<Object[]> batch = new ArrayList<>(existingIds.size());
+        for (Long memberId : existingIds) {
+            batch.add(new Object[]{deltas.get(memberId), memberId});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_AGE, batch);
+        ageSumByTeam.forEach((teamId, ageSum) -> teamStatsRecorder.record(em, teamId, 0, ageSum));
+        return existingIds;
+    }
+
+    private void evict(List<Long> updatedIds) {
+        if (updatedIds.isEmpty()) {
+            return;
+        }
+        javax.persistence.Cache secondLevelCache = entityManagerFactory.getCache();
+        for (Long id : updatedIds) {
+            secondLevelCache.evict(Member.class, id);
+        }
+        countCache.invalidateAll(); // JDBC로 직접 update - StatementInspector/엔티티 이벤트를 거치지 않는다.
+        lookupService.invalidateMembers(updatedIds);
+    }
+
+    /**
+     * 종료 시 남은 변경을 모두 반영한다. (이후 addAge는 거절)
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        Lock lock = bufferLock.writeLock();
+        lock.lock(); // 진행 중인 addAge가 끝날 때까지 기다린다. 이후 addAge는 closed를 본다.
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                if (attempt >= 3) {
+                    log.error("회원 나이 버퍼 종료 - 반영하지 못한 회원 {}건 : {}", pending.size(), pending, e);
+                    return;
+                }
+            }
+        }
+        log.info("회원 나이 버퍼 종료 - 반영 {}건, 합쳐진 호출 {}건", (long) flushedRows.count(), (long) updates.count());
+    }
+}
@@ -0,0 +1,71 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.config.BoundedRepositoryExecutor;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.CountMode;
+import com.study.datajpa.repository.MemberJpaRepository;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 리포지토리 조회를 repositoryExecutor에서 비동기로 실행한다.
+ * 서로 독립적인 조회(회원 페이지 + 팀 + 카운트)를 동시에 보내면 전체 응답시간이 합이 아니라 가장 느린 것 하나가 된다.
+ *
+ * 주의 : 작업마다 별도의 읽기 전용 트랜잭션(영속성 컨텍스트)에서 실행되므로 결과 엔티티는 준영속 상태다.
+ *       지연로딩이 필요한 연관관계는 fetch join/엔티티 그래프로 미리 조회할 것
+ */
+@Service
+public class MemberAsyncService {
+
+    private final MemberRepository memberRepository;
+    private final MemberJpaRepository memberJpaRepository;
+    private final TeamRepository teamRepository;
+    private final BoundedRepositoryExecutor executor;
+    private final TransactionTemplate readOnlyTx;
+
+    public MemberAsyncService(MemberRepository memberRepository,
+                              MemberJpaRepository memberJpaRepository,
+                              TeamRepository teamRepository,
+                              BoundedRepositoryExecutor repositoryExecutor,
+                              PlatformTransactionManager transactionManager) {
+        this.memberRepository = memberRepository;
+        this.memberJpaRepository = memberJpaRepository;
+        this.teamRepository = teamRepository;
+        this.executor = repositoryExecutor;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * findByAge와 같은 결과 - content 조회와 count 조회를 동시에 실행한다.
+     */
+    public CompletableFuture<Page<Member>> findByAge(int age, Pageable pageable, CountMode countMode) {
+        CompletableFuture<List<Member>> content = supply(() -> memberRepository.findByAgeSlice(age, pageable).getContent());
+        CompletableFuture<Long> total = supply(() -> memberJpaRepository.totalCount(age, countMode));
+        return content.thenCombine(total, (members, count) -> new PageImpl<>(members, pageable, count));
+    }
+
+    public CompletableFuture<Optional<Team>> findTeam(Long teamId) {
+        return supply(() -> teamRepository.findById(teamId));
+    }
+
+    public CompletableFuture<Long> countMembers() {
+        return supply(memberRepository::count);
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> readOnlyTx.execute(status -> query.get()), executor);
+    }
+}
@@ -0,0 +1,183 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberCountCache;
+import com.study.datajpa.repository.TeamStatsRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * 대량 회원 나이 증가 - MemberRepository.bulkAgePlus의 청크 버전
+ *
+ * bulkAgePlus는 update 한 방이라 대상 row 전체에 락을 잡은 채 긴 트랜잭션이 되고, 끝나면 em.clear()로 영속성 컨텍스트를 통째로 비운다.
+ * 여기서는
+ * - id 순으로 chunkSize 건씩 잘라서 청크마다 별도의 짧은 트랜잭션(REQUIRES_NEW)으로 update 한다.
+ * - 청크가 커밋될 때마다 진행 상황을 알려주고, 실패하면 마지막 커밋 지점(lastId)부터 다시 시작할 수 있다.
+ * - 변경된 회원만 2차 캐시에서 evict 하고, 호출자의 영속성 컨텍스트에 있으면 DB 값으로 refresh 한다.
+ *   (호출자가 flush 전에 바꾼 속성은 refresh 후 다시 적용한다. - 호출자 변경이 사라지지 않는다.)
+ *
+ * JPQL 벌크 연산은 hibernate가 Member 2차 캐시 영역 전체를 비우므로 update는 JDBC로 직접 실행한다.
+ * 주의 : 호출자 트랜잭션에서 이미 수정한(락을 잡은) 회원이 대상이면 청크 트랜잭션이 그 락을 기다리게 된다.
+ */
+@Slf4j
+@Service
+public class MemberBulkUpdateService {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTx;
+    private final EntityManagerFactory entityManagerFactory;
+    private final MemberCountCache countCache;
+    private final MemberLookupService lookupService;
+    private final TeamStatsRecorder teamStatsRecorder;
+
+    public MemberBulkUpdateService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   EntityManagerFactory entityManagerFactory,
+                                   MemberCountCache countCache,
+                                   MemberLookupService lookupService,
+                                   TeamStatsRecorder teamStatsRecorder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManagerFactory = entityManagerFactory;
+        this.countCache = countCache;
+        this.lookupService = lookupService;
+        this.teamStatsRecorder = teamStatsRecorder;
+    }
+
+    public BulkUpdateProgress bulkAgePlus(int age, int chunkSize) {
+        return bulkAgePlus(age, chunkSize, 0L, BulkUpdateListener.NONE);
+    }
+
+    /**
+     * age 이상인 회원의 나이를 1 증가
+     *
+     * @param startAfterId 이 id 다음부터 처리 - 처음이면 0, 재시작이면 마지막으로 받은 progress.getLastId()
+     */
+    public BulkUpdateProgress bulkAgePlus(int age, int chunkSize, long startAfterId, BulkUpdateListener listener) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다: " + chunkSize);
+        }
+        Long maxId = jdbcTemplate.queryForObject("select max(memeber_id) from member", Long.class);
+        long endId = maxId == null ? startAfterId : maxId;
+
+        BulkUpdateProgress progress = new BulkUpdateProgress(startAfterId, endId, 0, 0);
+        while (!progress.isDone()) {
+            long afterId = progress.getLastId();
+            ChunkResult chunk = chunkTx.execute(status -> updateChunk(age, afterId, endId, chunkSize));
+            if (chunk == null || chunk.lastId == null) {
+                break; // 남은 row가 없다.(그 사이 삭제됨)
+            }
+
+            evict(chunk.updatedIds);
+            progress = new BulkUpdateProgress(chunk.lastId, endId,
+                    progress.getUpdated() + chunk.updatedIds.size(), progress.getChunks() + 1);
+            listener.onChunkCommitted(progress);
+        }
+        log.info("bulkAgePlus(age >= {}) 완료 - {}", age, progress);
+        return progress;
+    }
+
+    private ChunkResult updateChunk(int age, long afterId, long maxId, int chunkSize) {
+        // 청크 경계 : afterId 다음 id부터 chunkSize 건
+        List<Long> chunkIds = jdbcTemplate.queryForList(
+                "select memeber_id from member where memeber_id > ? and memeber_id <= ? order by memeber_id limit ?",
+                Long.class, afterId, maxId, chunkSize);
+        if (chunkIds.isEmpty()) {
+            return new ChunkResult(null, List.of());
+        }
+        long lastId = chunkIds.get(chunkIds.size() - 1);
+
+        List<Long> updatedIds = jdbcTemplate.queryForList(
+                "select memeber_id from member where memeber_id > ? and memeber_id <= ? and age >= ? for update",
+                Long.class, afterId, lastId, age);
+        if (!updatedIds.isEmpty()) {
+            // 팀별 나이 합계 - 대상 row는 위에서 락을 잡았으므로 update 결과와 일치한다.(청크 트랜잭션 커밋 시 반영)
+            jdbcTemplate.query("select team_id, count(*) from member" +
+                            " where memeber_id > ? and memeber_id <= ? and age >= ? and team_id is not null group by team_id",
+                    rs -> {
+                        teamStatsRecorder.record(em, rs.getLong(1), 0, rs.getLong(2));
+                    }, afterId, lastId, age);
+            jdbcTemplate.update("update member set age = age + 1, version = version + 1 where memeber_id > ? and memeber_id <= ? and age >= ?",
+                    afterId, lastId, age);
+        }
+        return new ChunkResult(lastId, updatedIds);
+    }
+
+    /**
+     * 커밋된 청크에서 변경된 회원만 2차 캐시에서 제거하고 호출자의 영속성 컨텍스트에서 다시 읽는다.
+     */
+    private void evict(List<Long> updatedIds) {
+        if (updatedIds.isEmpty()) {
+            return;
+        }
+        javax.persistence.Cache secondLevelCache = entityManagerFactory.getCache();
+        for (Long id : updatedIds) {
+            secondLevelCache.evict(Member.class, id);
+        }
+        countCache.invalidateAll(); // JDBC로 직접 update 했으므로 StatementInspector를 거치지 않는다.
+        lookupService.invalidateMembers(updatedIds); // 엔티티 이벤트도 발생하지 않는다.
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+            for (Long id : updatedIds) {
+                Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+                if (managed != null) {
+                    refreshKeepingChanges(session, persister, managed);
+                }
+            }
+        }
+    }
+
+    /**
+     * refresh로 나이/version을 DB 값으로 맞추고, 호출자가 아직 flush 안 한 변경은 다시 적용한다.
+     * (detach하면 그 변경이 사라지고, flush를 먼저 하면 청크 트랜잭션이 호출자의 row 락을 기다린다.)
+     * 나이는 증감분으로 다시 적용한다. (로딩 때 10 -> 호출자가 15로 바꿈, 청크가 +1 -> 16)
+     * 그대로 덮어쓰면 청크의 +1이 사라진다.
+     */
+    private void refreshKeepingChanges(SessionImplementor session, EntityPersister persister, Object managed) {
+        EntityEntry entry = session.getPersistenceContext().getEntry(managed);
+        Object[] current = persister.getPropertyValues(managed);
+        Object[] loaded = entry == null ? null : entry.getLoadedState();
+        int[] dirty = loaded == null ? null : persister.findDirty(current, loaded, managed, session);
+        em.refresh(managed);
+        if (dirty != null) {
+            int ageIndex = persister.getEntityMetamodel().getPropertyIndex("age");
+            for (int property : dirty) {
+                Object value = current[property];
+                if (property == ageIndex) {
+                    int refreshed = (Integer) persister.getPropertyValue(managed, property);
+                    value = refreshed + ((Integer) current[property] - (Integer) loaded[property]);
+                }
+                persister.setPropertyValue(managed, property, value);
+            }
+        }
+    }
+
+    private static final class ChunkResult {
+        private final Long lastId;
+        private final List<Long> updatedIds;
+
+        private ChunkResult(Long lastId, List<Long> updatedIds) {
+            this.lastId = lastId;
+            this.updatedIds = updatedIds;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.OptimisticRetry;
+import com.study.datajpa.repository.TeamRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 회원 변경 - 읽고 바꾸고 커밋할 때 version이 달라졌으면(다른 트랜잭션이 먼저 커밋) 처음부터 다시 실행한다.
+ * 비관적 락(select for update) 없이도 동시 변경이 유실되지 않는다.
+ */
+@Service
+public class MemberCommandService {
+
+    private final MemberRepository memberRepository;
+    private final TeamRepository teamRepository;
+
+    public MemberCommandService(MemberRepository memberRepository, TeamRepository teamRepository) {
+        this.memberRepository = memberRepository;
+        this.teamRepository = teamRepository;
+    }
+
+    @OptimisticRetry
+    @Transactional
+    public Member changeTeam(Long memberId, Long teamId) {
+        Member member = getMember(memberId);
+        Team team = teamRepository.findById(teamId)
+                .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 팀 id : " + teamId));
+        member.changeTeam(team); // team.members는 로딩하지 않는다.
+        return member;
+    }
+
+    @OptimisticRetry
+    @Transactional
+    public Member addAge(Long memberId, int delta) {
+        Member member = getMember(memberId);
+        member.setAge(member.getAge() + delta);
+        return member;
+    }
+
+    private Member getMember(Long memberId) {
+        return memberRepository.findById(memberId)
+                .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 회원 id : " + memberId));
+    }
+}
@@ -0,0 +1,31 @@
+package com.study.datajpa.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * 실행 시 --app.import.members-csv=/path/members.csv 를 주면 회원 CSV를 적재한다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.import", name = "members-csv")
+public class MemberCsvImportRunner implements ApplicationRunner {
+
+    private final MemberCsvImportService importService;
+    private final String csv;
+
+    public MemberCsvImportRunner(MemberCsvImportService importService,
+                                 @Value("${app.import.members-csv}") String csv) {
+        this.importService = importService;
+        this.csv = csv;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        importService.importMembers(Paths.get(csv));
+    }
+}
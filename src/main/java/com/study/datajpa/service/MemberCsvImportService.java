@@ -0,0 +1,267 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberJpaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 회원 CSV 일괄 적재 (userName,age,teamName - 첫 줄이 userName으로 시작하면 헤더로 보고 건너뛴다.)
+ *
+ * read -> parse  : 별도 스레드가 FileChannel을 큰 버퍼로 읽어 batchSize 줄씩 묶는다.
+ *                  큐(queue-capacity 배치)가 가득 차면 쓰기가 따라올 때까지 읽기를 멈춘다.(backpressure - 메모리 일정)
+ * resolve        : 팀 이름 -> id 는 시작할 때 한 번 읽어둔 Map으로 찾고, 없는 팀만 새로 만든다.(줄마다 조회 x)
+ *                  새 팀은 별도 트랜잭션(REQUIRES_NEW)으로 바로 커밋한다. - 배치가 롤백되어도 Map의 id가 DB에 남아 있다.
+ * write          : 배치마다 트랜잭션 하나, saveAllBatched로 JDBC batch insert 후 영속성 컨텍스트를 비운다.
+ */
+@Slf4j
+@Service
+public class MemberCsvImportService {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate teamTx;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public MemberCsvImportService(MemberJpaRepository memberJpaRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.import.batch-size:1000}") int batchSize,
+                                  @Value("${app.import.queue-capacity:8}") int queueCapacity) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.teamTx = new TransactionTemplate(transactionManager);
+        this.teamTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public CsvImportResult importMembers(Path csv) {
+        long start = System.nanoTime();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long peakHeap = memory.getHeapMemoryUsage().getUsed();
+
+        Map<String, Long> teamIds = loadTeamIds();
+        int teamsBefore = teamIds.size();
+
+        BlockingQueue<List<MemberRow>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> readFailure = new AtomicReference<>();
+        AtomicLong skipped = new AtomicLong();
+        Thread reader = new Thread(() -> read(csv, queue, skipped, readFailure), "member-csv-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long rows = 0;
+        try {
+            while (true) {
+                List<MemberRow> batch = queue.poll(1, TimeUnit.SECONDS);
+                if (batch == null) {
+                    if (!reader.isAlive() && queue.isEmpty()) {
+                        break; // 리더가 END를 넣기 전에 죽은 경우
+                    }
+                    continue;
+                }
+                if (batch == END) {
+                    break;
+                }
+                rows += write(batch, teamIds);
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("회원 CSV 적재가 중단되었습니다.", e);
+        } finally {
+            stopReader(reader);
+        }
+
+        if (readFailure.get() != null) {
+            throw new IllegalStateException("회원 CSV 읽기 실패 : " + csv + " (" + rows + "건 저장됨)", readFailure.get());
+        }
+
+        CsvImportResult result = new CsvImportResult(rows, skipped.get(), teamIds.size() - teamsBefore,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), peakHeap);
+        log.info("회원 CSV 적재 완료 : {} - {}", csv, result);
+        return result;
+    }
+
+    /*******************************************read -> parse*****************************************************/
+
+    private static final List<MemberRow> END = new ArrayList<>(0);
+
+    private void read(Path csv, BlockingQueue<List<MemberRow>> queue, AtomicLong skipped, AtomicReference<Throwable> failure) {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                     Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), READ_BUFFER_SIZE), READ_BUFFER_SIZE)) {
+            List<MemberRow> batch = new ArrayList<>(batchSize);
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    if (line.startsWith("userName")) {
+                        continue;
+                    }
+                }
+                MemberRow row = MemberRow.parse(line);
+                if (row == null) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    queue.put(batch); // 큐가 가득 차면 여기서 대기
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        } catch (IOException e) {
+            failure.set(new UncheckedIOException(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.set(e);
+        } catch (RuntimeException e) {
+            failure.set(e);
+        } finally {
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 쓰기가 실패하면 리더는 가득 찬 큐(put)에서 멈춰 있다. - 인터럽트로 깨워 FileChannel을 닫고 끝날 때까지 기다린다.
+     * (FileChannel은 인터럽트되면 닫힌다. 정상 종료면 이미 끝난 스레드라 아무 일도 하지 않는다.)
+     */
+    private static void stopReader(Thread reader) {
+        if (!reader.isAlive()) {
+            return;
+        }
+        reader.interrupt();
+        try {
+            reader.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reader.isAlive()) {
+            log.warn("회원 CSV 리더 스레드가 종료되지 않았습니다 : {}", reader.getName());
+        }
+    }
+
+    /*******************************************resolve -> write**************************************************/
+
+    private Map<String, Long> loadTeamIds() {
+        Map<String, Long> teamIds = new HashMap<>();
+        tx.executeWithoutResult(status -> {
+            for (Object[] row : em.createQuery("select t.name, t.id from Team t", Object[].class).getResultList()) {
+                teamIds.putIfAbsent((String) row[0], (Long) row[1]);
+            }
+        });
+        return teamIds;
+    }
+
+    private int write(List<MemberRow> batch, Map<String, Long> teamIds) {
+        Integer saved = tx.execute(status -> {
+            List<Member> members = new ArrayList<>(batch.size());
+            for (MemberRow row : batch) {
+                Member member = new Member(row.userName, row.age);
+                if (row.teamName != null) {
+                    Long teamId = teamIds.computeIfAbsent(row.teamName, this::createTeam);
+                    // 프록시만 만든다.(select x) changeTeam은 team.members를 건드리므로 사용하지 않는다.
+                    member.setTeam(em.getReference(Team.class, teamId));
+                }
+                members.add(member);
+            }
+            return memberJpaRepository.saveAllBatched(members, batchSize);
+        });
+        return saved == null ? 0 : saved;
+    }
+
+    /**
+     * 배치 트랜잭션을 잠시 멈추고 새 트랜잭션으로 커밋한다. - 배치가 롤백되어도 teamIds에 캐시한 id는 유효하다.
+     */
+    private Long createTeam(String name) {
+        return teamTx.execute(status -> {
+            Team team = new Team(name);
+            em.persist(team);
+            return team.getId();
+        });
+    }
+
+    /**
+     * 한 줄 파싱 - split/정규식 없이 구분자 위치만 찾고, 나이는 문자열을 만들지 않고 바로 숫자로 변환
+     */
+    static final class MemberRow {
+        final String userName;
+        final int age;
+        final String teamName;
+
+        private MemberRow(String userName, int age, String teamName) {
+            this.userName = userName;
+            this.age = age;
+            this.teamName = teamName;
+        }
+
+        static MemberRow parse(String line) {
+            int first = line.indexOf(',');
+            if (first <= 0) {
+                return null;
+            }
+            int second = line.indexOf(',', first + 1);
+            int ageEnd = second < 0 ? line.length() : second;
+            if (ageEnd == first + 1) {
+                return null;
+            }
+
+            int age = 0;
+            for (int i = first + 1; i < ageEnd; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                if (age > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                    return null; // int 범위를 넘는 긴 숫자열 - 넘친 값으로 적재되지 않도록 잘못된 줄로 건너뛴다.
+                }
+                age = age * 10 + (c - '0');
+            }
+
+            String teamName = second < 0 || second == line.length() - 1 ? null : line.substring(second + 1);
+            return new MemberRow(line.substring(0, first), age, teamName);
+        }
+    }
+}
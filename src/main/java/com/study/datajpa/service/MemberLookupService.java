@@ -0,0 +1,212 @@
+package com.study.datajpa.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * username 조회 캐시 - 소수의 username에 조회가 몰리므로 앞단에서 username -> id, id -> MemberDto 를 캐시한다.
+ * - Caffeine(W-TinyLFU) : 크기 제한 안에서 자주 조회되는 키를 남긴다.
+ * - LoadingCache.get은 키별로 한 번만 로딩한다. 같은 키를 동시에 요청하면 나머지는 그 결과를 기다린다.(stampede 방지)
+ * - id -> Member 는 2차 캐시(findById)가 담당하므로 여기서는 id 목록만 캐시한다.
+ *
+ * 무효화 : 회원 insert/update(changeTeam 포함)/delete, 팀 이름 변경 시 flush 시점과 커밋 직후 두 번 비운다.
+ *         (커밋 전에 다른 스레드가 옛날 값을 다시 로딩해서 캐시에 넣는 경우 대비)
+ * 로딩 : 트랜잭션 밖에서 호출했을 때만 캐시에 로딩한다. -> 커밋된 값만 캐시에 들어간다.
+ *        쓰기 트랜잭션 안 - 캐시를 거치지 않고 그 트랜잭션에서 바로 조회한다.(자기 변경은 보인다.)
+ *        읽기 전용 트랜잭션 안 - 캐시에 있으면 쓰고 없으면 그 트랜잭션에서 조회만 한다.(캐시에 넣지 않는다.)
+ *        (별도 트랜잭션으로 로딩하면 호출한 트랜잭션 커넥션을 잡은 채 커넥션을 하나 더 얻어야 해서 풀이 바닥나면 서로 기다린다.)
+ */
+@Service
+public class MemberLookupService implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final MemberRepository memberRepository;
+    private final LoadingCache<String, List<Long>> usernameToIds;
+    private final LoadingCache<Long, Optional<MemberDto>> idToDto;
+
+    public MemberLookupService(MemberRepository memberRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.member-lookup-cache.max-size:10000}") long maxSize,
+                               @Value("${app.member-lookup-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.memberRepository = memberRepository;
+        this.usernameToIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(username -> List.copyOf(memberRepository.findIdsByUsername(username)));
+        this.idToDto = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(memberRepository::findMemberDtoById);
+
+        // cache.gets{result=hit|miss}, cache.loads, cache.load.duration ...
+        CaffeineCacheMetrics.monitor(meterRegistry, usernameToIds, "member.username");
+        CaffeineCacheMetrics.monitor(meterRegistry, idToDto, "member.dto");
+    }
+
+    /*******************************************username 조회 (MemberRepository 와 같은 의미)***********************/
+
+    public List<Member> findByUsername(String username) {
+        List<Member> members = new ArrayList<>();
+        List<Long> ids = lookup(usernameToIds, username, memberRepository::findIdsByUsername);
+        for (Long id : ids) {
+            memberRepository.findById(id).ifPresent(members::add); // 2차 캐시
+        }
+        return members;
+    }
+
+    public List<Member> findListByUsername(String username) {
+        return findByUsername(username);
+    }
+
+    public Optional<Member> findOptionalMemberByUsername(String username) {
+        List<Member> members = findByUsername(username);
+        if (members.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, members.size());
+        }
+        return members.stream().findFirst();
+    }
+
+    public Member findMemberByUsername(String username) {
+        return findOptionalMemberByUsername(username).orElse(null);
+    }
+
+    public Optional<MemberDto> findDtoById(Long id) {
+        return lookup(idToDto, id, memberRepository::findMemberDtoById);
+    }
+
+    /**
+     * 트랜잭션 밖 - 캐시(없으면 로딩) / 읽기 전용 트랜잭션 - 캐시에 있을 때만 / 쓰기 트랜잭션 - 캐시를 거치지 않는다.
+     * (쓰기 트랜잭션은 flush 전 변경이 있을 수 있어서 flush 하지 않고는 캐시 값을 써도 되는지 알 수 없다.)
+     */
+    private static <K, V> V lookup(LoadingCache<K, V> cache, K key, Function<K, V> query) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cache.get(key);
+        }
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            V cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return query.apply(key);
+    }
+
+    /*******************************************무효화**************************************************************/
+
+    public void invalidateMembers(Collection<Long> ids) {
+        List<Long> copy = List.copyOf(ids);
+        invalidateAfterCommit(() -> idToDto.invalidateAll(copy));
+    }
+
+    public void invalidateAll() {
+        usernameToIds.invalidateAll();
+        idToDto.invalidateAll();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidate(userNameOf(event.getPersister(), event.getState()), null, (Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            String userName = userNameOf(event.getPersister(), event.getState());
+            if (event.getOldState() == null) {
+                // 이전 값을 모르면(detached merge 등) 어느 username에 이 id가 있었는지 알 수 없다.
+                invalidateAfterCommit(this::invalidateAll);
+                return;
+            }
+            invalidate(userName, userNameOf(event.getPersister(), event.getOldState()), (Long) event.getId());
+        } else if (event.getEntity() instanceof Team) {
+            // MemberDto에 팀 이름이 들어있다.
+            invalidateAfterCommit(idToDto::invalidateAll);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidate(userNameOf(event.getPersister(), event.getDeletedState()), null, (Long) event.getId());
+        } else if (event.getEntity() instanceof Team) {
+            invalidateAfterCommit(idToDto::invalidateAll);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false; // 커밋 후 처리는 TransactionSynchronization으로 한다.
+    }
+
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister); // hibernate 5에서는 아직 구현해야 하는 메소드
+    }
+
+    private void invalidate(String userName, String oldUserName, Long id) {
+        invalidateAfterCommit(() -> {
+            if (userName != null) {
+                usernameToIds.invalidate(userName);
+            }
+            if (oldUserName != null && !Objects.equals(userName, oldUserName)) {
+                usernameToIds.invalidate(oldUserName);
+            }
+            idToDto.invalidate(id);
+        });
+    }
+
+    private static void invalidateAfterCommit(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new PendingInvalidation(invalidation));
+        }
+    }
+
+    /**
+     * 커밋/롤백 후 한 번 더 무효화
+     */
+    private static final class PendingInvalidation implements TransactionSynchronization {
+        private final Runnable invalidation;
+
+        private PendingInvalidation(Runnable invalidation) {
+            this.invalidation = invalidation;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            invalidation.run();
+        }
+    }
+
+    private static String userNameOf(EntityPersister persister, Object[] state) {
+        if (state == null) {
+            return null;
+        }
+        return (String) state[persister.getEntityMetamodel().getPropertyIndex("userName")];
+    }
+}
@@ -0,0 +1,181 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.InListChunks;
+import com.study.datajpa.repository.MemberShard;
+import com.study.datajpa.repository.ShardRouter;
+import com.study.datajpa.repository.ShardedMemberRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.SequenceGenerator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 샤드 재분배 - member id 구간 [fromId, toId)를 다른 샤드로 옮긴다.
+ * 0. 구간 쓰기를 막는다.(ShardRouter.fence - 진행 중인 insert/수정/삭제가 커밋될 때까지 기다리고, 이후 그 구간 쓰기는 거절)
+ *    원래 샤드가 아직 발급하지 않은 id(hibernate가 메모리에 당겨둔 pooled-lo 블록 포함)가 구간에 있으면 옮기지 않는다.
+ * 1. 원래 샤드에서 batch-size 건씩 읽어 대상 샤드에 id 그대로 insert
+ * 2. 원래 샤드에서 복사한 id만 한 트랜잭션으로 삭제 - 지운 수가 복사한 수와 다르면 롤백
+ *    실패하면 대상 샤드에 복사한 것을 지우고 끝낸다.(라우팅은 그대로, 양쪽에 남지 않는다.)
+ * 3. 라우팅 변경 (이후 그 구간 조회/수정은 대상 샤드로) 후 fence 해제
+ * fence는 메모리에 있으므로 애플리케이션 인스턴스가 하나일 때만 안전하다.
+ * 팀은 homeShard에 고정이므로(ShardRouter.shardForTeam) 팀이 있는 회원이 있는 구간은 옮기지 않는다.
+ * 1~3 사이 전체 샤드 조회(count 등)는 복사한 회원을 두 번 셀 수 있고, 2~3 사이 id 조회는 그 구간 회원을 못 찾을 수 있다.
+ * 라우팅은 메모리에만 바뀐다. - 로그에 찍힌 구간을 app.sharding.moved-ranges에 추가해야 재기동 후에도 유지된다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+public class MemberReshardService {
+
+    // 회원 시퀀스 증가폭 = hibernate가 한 번에 당겨오는 id 수 (pooled-lo)
+    private static final int ID_BLOCK_SIZE = Member.class.getAnnotation(SequenceGenerator.class).allocationSize();
+
+    private final ShardedMemberRepository shardedMemberRepository;
+    private final Counter movedRows;
+    private final int batchSize;
+    private final int inClauseChunkSize;
+
+    public MemberReshardService(ShardedMemberRepository shardedMemberRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.sharding.reshard-batch-size:1000}") int batchSize,
+                                @Value("${app.in-clause.max-chunk-size:512}") int inClauseChunkSize) {
+        this.shardedMemberRepository = shardedMemberRepository;
+        this.movedRows = meterRegistry.counter("shard.reshard.moved");
+        this.batchSize = batchSize;
+        this.inClauseChunkSize = InListChunks.powerOfTwoFloor(inClauseChunkSize);
+    }
+
+    /**
+     * @return 옮긴 회원 수
+     */
+    public synchronized long moveRange(long fromId, long toId, int targetShard) {
+        ShardRouter router = shardedMemberRepository.getRouter();
+        if (fromId < 0 || fromId >= toId || targetShard < 0 || targetShard >= router.getShardCount()) {
+            throw new IllegalArgumentException("잘못된 구간 [" + fromId + ", " + toId + ") -> " + targetShard);
+        }
+        int sourceShard = router.ownerOf(fromId, toId);
+        if (sourceShard < 0) {
+            throw new IllegalArgumentException("[" + fromId + ", " + toId + ")가 여러 샤드에 걸쳐 있습니다. 샤드별로 나눠서 옮기세요.");
+        }
+        if (sourceShard == targetShard) {
+            return 0;
+        }
+        MemberShard source = shardedMemberRepository.getShards().get(sourceShard);
+        MemberShard target = shardedMemberRepository.getShards().get(targetShard);
+
+        router.fence(fromId, toId);
+        try {
+            checkNoFutureIds(router, source, fromId, toId);
+            checkNoTeamMembers(source, fromId, toId);
+
+            List<Long> copiedIds = new ArrayList<>();
+            try {
+                copy(source, target, fromId, toId, copiedIds);
+                deleteIds(source, "reshard.delete", copiedIds);
+            } catch (RuntimeException e) {
+                try {
+                    deleteIds(target, "reshard.rollback", copiedIds);
+                } catch (RuntimeException rollbackFailure) {
+                    log.error("샤드 재분배 롤백 실패 - {}의 [{}, {})를 직접 지워야 합니다.", target.getName(), fromId, toId, rollbackFailure);
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            }
+
+            long moved = copiedIds.size();
+            router.assign(fromId, toId, targetShard);
+            movedRows.increment(moved);
+            log.info("샤드 재분배 [{}, {}) {} -> {} : {}건 - app.sharding.moved-ranges에 {}-{}:{} 추가 필요 (라우팅 {})",
+                    fromId, toId, source.getName(), target.getName(), moved, fromId, toId, targetShard, router.getRanges());
+            return moved;
+        } finally {
+            router.unfence(fromId, toId);
+        }
+    }
+
+    /**
+     * 복사한 id만 한 트랜잭션으로 지운다. 지운 수가 다르면(복사 후 누가 바꿨다) 롤백하고 실패
+     */
+    private void deleteIds(MemberShard shard, String operation, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        shard.jdbc(operation, jdbc -> {
+            List<Integer> counts = InListChunks.execute(ids, inClauseChunkSize, chunk -> List.of(jdbc.update(
+                    "delete from member where memeber_id in (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+                    chunk.toArray())));
+            int deleted = counts.stream().mapToInt(Integer::intValue).sum();
+            if (deleted != ids.size()) {
+                throw new IncorrectResultSizeDataAccessException(shard.getName() + "에서 " + ids.size() + "건을 지워야 하는데 "
+                        + deleted + "건 지웠습니다.", ids.size(), deleted);
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * 원래 샤드가 앞으로 발급할 id가 옮기는 구간에 들어가면 안 된다.
+     * 시퀀스에서 새 블록을 하나 받아 그 앞 블록(hibernate가 지금 쓰고 있을 수 있는 블록) 시작 전까지만 옮길 수 있다.
+     * (새 블록 하나는 버린다. - 재분배 한 번에 id 50개)
+     */
+    private static void checkNoFutureIds(ShardRouter router, MemberShard source, long fromId, long toId) {
+        if (router.homeShard(fromId) != source.getIndex()) {
+            return; // 이전에 옮겨온 구간 - 이 샤드가 새로 발급하지 않는다.
+        }
+        Long nextBlock = source.jdbc("reshard.sequence", jdbc ->
+                jdbc.queryForObject("select next value for member_seq", Long.class));
+        long issuedBefore = nextBlock - ID_BLOCK_SIZE;
+        if (toId > issuedBefore) {
+            throw new IllegalArgumentException("[" + fromId + ", " + toId + ")에 아직 발급되지 않았거나 사용 중인 id 블록이 있습니다. (" + issuedBefore + " 미만만 가능)");
+        }
+    }
+
+    /**
+     * 팀은 옮기지 않는다. - 대상 샤드에 팀 row를 복사하면 이후 팀 변경(saveTeam, homeShard)이 복사본에 반영되지 않는다.
+     */
+    private static void checkNoTeamMembers(MemberShard source, long fromId, long toId) {
+        Long teamMembers = source.jdbc("reshard.teamMembers", jdbc -> jdbc.queryForObject(
+                "select count(*) from member where memeber_id >= ? and memeber_id < ? and team_id is not null",
+                Long.class, fromId, toId));
+        if (teamMembers != null && teamMembers > 0) {
+            throw new IllegalArgumentException("[" + fromId + ", " + toId + ")에 팀이 있는 회원이 " + teamMembers
+                    + "명 있습니다. 팀 회원은 팀 샤드에서 옮길 수 없습니다.");
+        }
+    }
+
+    private void copy(MemberShard source, MemberShard target, long fromId, long toId, List<Long> copiedIds) {
+        long after = fromId - 1;
+        while (true) {
+            long lastId = after;
+            List<Object[]> members = source.jdbc("reshard.read", jdbc -> jdbc.query(
+                    "select memeber_id, user_name, age, version from member" +
+                            " where memeber_id > ? and memeber_id < ? order by memeber_id limit ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getObject(4)},
+                    lastId, toId, batchSize));
+            if (members.isEmpty()) {
+                return;
+            }
+
+            target.jdbc("reshard.write", jdbc -> jdbc.batchUpdate(
+                    "insert into member (memeber_id, user_name, age, version) values (?, ?, ?, ?)", members));
+            for (Object[] member : members) {
+                copiedIds.add((Long) member[0]);
+            }
+            after = (Long) members.get(members.size() - 1)[0];
+        }
+    }
+
+    public Map<Long, Integer> getRanges() {
+        return shardedMemberRepository.getRouter().getRanges();
+    }
+}
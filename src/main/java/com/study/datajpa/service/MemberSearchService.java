@@ -0,0 +1,306 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.dto.MemberSuggestion;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * username 자동완성(prefix 검색) - DB 대신 메모리 인덱스에서 userName, id 순으로 상위 k건을 찾는다.
+ *
+ * 구조
+ * - snapshot  : 정렬된 배열 인덱스(UsernameSnapshot) - 이진 탐색으로 prefix 시작 위치를 찾고 차례로 읽는다.
+ * - overlay   : snapshot 이후 추가/이름 변경된 회원 (ConcurrentSkipListSet, 같은 순서)
+ * - tombstone : snapshot에서 삭제/이름 변경된 회원 id (정렬된 long[], 변경 시 복사)
+ * 검색은 snapshot과 overlay를 병합하면서 읽으므로 락이 없다. overlay + tombstone이 compact-threshold를 넘으면 새 snapshot으로 합친다.
+ * 병합(O(회원 수))은 별도 스레드에서 락 없이 하고, 그동안의 변경은 모아뒀다가 새 snapshot에 다시 적용한다.
+ * (커밋 후 콜백 - 변경한 요청 스레드가 병합을 기다리지 않는다.)
+ *
+ * 메모리 (userName 평균 10자 기준, 회원 100만 명)
+ * - snapshot : 100만 * (10 * 2 + int 4 + long 8) = 약 32MB (TreeMap<String, Long>이면 엔트리당 String/Long/Entry 객체로 약 120MB)
+ * - overlay  : 엔트리당 약 100바이트 - compact-threshold 건까지만 쌓인다.
+ * - 재적재/병합 중에는 잠깐 두 벌이 있으므로 최대 약 2배
+ *
+ * 동기화 : 회원 insert/delete/이름 변경은 커밋 후 반영된다.(롤백된 변경은 반영 x)
+ *         벌크 연산(deleteAllInBatch, JDBC)은 이벤트가 없으므로 rebuild()로 다시 적재한다.
+ */
+@Slf4j
+@Service
+public class MemberSearchService implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final int compactThreshold;
+    private final int maxLimit;
+
+    private volatile Index index = new Index(UsernameSnapshot.EMPTY);
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "member-search-compact");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private List<Consumer<Index>> changesDuringCompaction; // 병합 중일 때만 (this로 동기화)
+
+    public MemberSearchService(MemberRepository memberRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.member-search.compact-threshold:10000}") int compactThreshold,
+                               @Value("${app.member-search.max-limit:100}") int maxLimit) {
+        this.memberRepository = memberRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.compactThreshold = compactThreshold;
+        this.maxLimit = maxLimit;
+
+        Gauge.builder("member.search.index.entries", this, s -> s.index.snapshot.size() + s.index.overlay.size())
+                .register(meterRegistry);
+        Gauge.builder("member.search.index.overlay", this, s -> s.index.overlay.size() + s.index.tombstones.length)
+                .register(meterRegistry);
+        Gauge.builder("member.search.index.bytes", this, s -> s.index.snapshot.estimatedBytes())
+                .register(meterRegistry);
+    }
+
+    /**
+     * userName이 prefix로 시작하는 회원 - userName, id 순으로 최대 limit 건
+     */
+    public List<MemberSuggestion> search(String prefix, int limit) {
+        int k = Math.min(limit, maxLimit);
+        Index current = index;
+        UsernameSnapshot snapshot = current.snapshot;
+        long[] tombstones = current.tombstones;
+        List<MemberSuggestion> result = new ArrayList<>(Math.max(0, k));
+
+        int i = snapshot.lowerBound(prefix);
+        Iterator<MemberSuggestion> overlay = current.overlay.tailSet(new MemberSuggestion(Long.MIN_VALUE, prefix)).iterator();
+        MemberSuggestion o = nextMatch(overlay, prefix);
+        while (result.size() < k) {
+            while (i < snapshot.size() && snapshot.startsWith(i, prefix) && Arrays.binarySearch(tombstones, snapshot.id(i)) >= 0) {
+                i++;
+            }
+            boolean snapshotMatch = i < snapshot.size() && snapshot.startsWith(i, prefix);
+            if (!snapshotMatch && o == null) {
+                break;
+            }
+            if (o == null || (snapshotMatch && snapshot.compare(i, o.getUserName(), o.getId()) < 0)) {
+                result.add(snapshot.get(i++));
+            } else {
+                result.add(o);
+                o = nextMatch(overlay, prefix);
+            }
+        }
+        return result;
+    }
+
+    private static MemberSuggestion nextMatch(Iterator<MemberSuggestion> overlay, String prefix) {
+        if (!overlay.hasNext()) {
+            return null;
+        }
+        MemberSuggestion next = overlay.next();
+        return next.getUserName().startsWith(prefix) ? next : null;
+    }
+
+    /*******************************************적재 / 병합*****************************************************/
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * DB에서 다시 적재 - 회원을 userName 순으로 스트리밍하면서 배열에 쌓는다.(엔티티 x)
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        UsernameSnapshot snapshot = readOnlyTx.execute(status -> {
+            try (Stream<MemberSuggestion> members = memberRepository.streamUsernames()) {
+                return UsernameSnapshot.build(members.iterator());
+            }
+        });
+        index = new Index(snapshot);
+        log.info("username 인덱스 적재 - {}명, {}KB, {}ms", snapshot.size(), snapshot.estimatedBytes() / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void close() {
+        compactor.shutdownNow();
+    }
+
+    void add(Long id, String userName) {
+        change(target -> target.add(id, userName));
+    }
+
+    void remove(Long id, String userName) {
+        change(target -> target.remove(id, userName));
+    }
+
+    private synchronized void change(Consumer<Index> change) {
+        Index current = index;
+        change.accept(current);
+        if (changesDuringCompaction != null) {
+            changesDuringCompaction.add(change);
+            return;
+        }
+        if (current.overlay.size() + current.tombstones.length >= compactThreshold) {
+            List<MemberSuggestion> overlay = new ArrayList<>(current.overlay); // compact-threshold 건 이하
+            changesDuringCompaction = new ArrayList<>();
+            try {
+                compactor.execute(() -> compact(current, overlay, current.tombstones));
+            } catch (RejectedExecutionException e) {
+                changesDuringCompaction = null; // 종료 중 - overlay에 그대로 둔다.
+            }
+        }
+    }
+
+    private void compact(Index from, List<MemberSuggestion> overlay, long[] tombstones) {
+        UsernameSnapshot snapshot = null;
+        try {
+            snapshot = from.snapshot.merge(overlay, tombstones); // 락 없이
+        } catch (RuntimeException e) {
+            log.error("username 인덱스 병합 실패 - overlay에 그대로 둔다.", e);
+        }
+        synchronized (this) {
+            List<Consumer<Index>> changes = changesDuringCompaction;
+            changesDuringCompaction = null;
+            if (snapshot == null || index != from) {
+                return; // 실패했거나 그 사이 rebuild()로 다시 적재됐다.
+            }
+            Index merged = new Index(snapshot);
+            changes.forEach(change -> change.accept(merged));
+            index = merged;
+        }
+    }
+
+    /*******************************************회원 변경 (커밋 후 반영)********************************************/
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Long id = (Long) event.getId();
+            String userName = userName(event.getPersister(), event.getState());
+            afterCommit(() -> add(id, userName));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member && event.getOldState() != null) {
+            Long id = (Long) event.getId();
+            String oldName = userName(event.getPersister(), event.getOldState());
+            String newName = userName(event.getPersister(), event.getState());
+            if (!Objects.equals(oldName, newName)) {
+                afterCommit(() -> {
+                    remove(id, oldName);
+                    add(id, newName);
+                });
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Long id = (Long) event.getId();
+            String userName = userName(event.getPersister(), event.getDeletedState());
+            afterCommit(() -> remove(id, userName));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false; // 커밋 후 처리는 TransactionSynchronization으로 한다.
+    }
+
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister); // hibernate 5에서는 아직 구현해야 하는 메소드
+    }
+
+    private static String userName(EntityPersister persister, Object[] state) {
+        return (String) state[persister.getEntityMetamodel().getPropertyIndex("userName")];
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class Index {
+        final UsernameSnapshot snapshot;
+        final ConcurrentSkipListSet<MemberSuggestion> overlay = new ConcurrentSkipListSet<>(UsernameSnapshot.ORDER);
+        volatile long[] tombstones = new long[0];
+
+        Index(UsernameSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        boolean isTombstoned(long id) {
+            return Arrays.binarySearch(tombstones, id) >= 0;
+        }
+
+        void add(Long id, String userName) {
+            if (userName == null || snapshot.contains(userName, id) && !isTombstoned(id)) {
+                return; // 재적재한 snapshot에 이미 들어있는 경우
+            }
+            overlay.add(new MemberSuggestion(id, userName));
+        }
+
+        void remove(Long id, String userName) {
+            if (userName != null) {
+                overlay.remove(new MemberSuggestion(id, userName));
+                if (snapshot.contains(userName, id)) {
+                    addTombstone(id);
+                }
+            }
+        }
+
+        void addTombstone(long id) {
+            long[] current = tombstones;
+            int position = Arrays.binarySearch(current, id);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -position - 1;
+            long[] next = new long[current.length + 1];
+            System.arraycopy(current, 0, next, 0, insertAt);
+            next[insertAt] = id;
+            System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+            tombstones = next;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.dto.TeamStatsDto;
+import com.study.datajpa.repository.TeamRepository;
+import com.study.datajpa.repository.TeamStatsRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TeamStats 보정 - 실제 회원 집계와 비교해서 차이만큼 증감분을 더한다.(통계를 지우고 다시 만들지 않는다.)
+ * 엔티티 이벤트 없이 바뀐 데이터(deleteAllInBatch, 직접 실행한 SQL, 이전 상태 없는 update)로 생긴 차이를 맞춘다.
+ *
+ * 주의 : 집계와 비교 사이에 커밋된 변경은 잘못된 보정이 될 수 있지만 다음 실행에서 다시 맞춰진다.(한산한 시간에 실행)
+ * 주기 실행 : app.team-stats.reconcile.enabled=true (SchedulingConfig)
+ */
+@Slf4j
+@Service
+public class TeamStatsReconciler {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TeamRepository teamRepository;
+    private final TeamStatsRecorder recorder;
+    private final TransactionTemplate tx;
+    private final Counter corrections;
+
+    public TeamStatsReconciler(TeamRepository teamRepository,
+                               TeamStatsRecorder recorder,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.teamRepository = teamRepository;
+        this.recorder = recorder;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.corrections = meterRegistry.counter("team.stats.corrections");
+    }
+
+    @Scheduled(fixedDelayString = "${app.team-stats.reconcile.interval:PT1H}",
+            initialDelayString = "${app.team-stats.reconcile.interval:PT1H}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * @return 보정한 팀 수
+     */
+    public int reconcile() {
+        Integer corrected = tx.execute(status -> {
+            Map<Long, long[]> actual = new HashMap<>();
+            for (Object[] row : em.createNamedQuery("Member.countByTeam", Object[].class).getResultList()) {
+                actual.put((Long) row[0], new long[]{(Long) row[1], (Long) row[2]});
+            }
+            Map<Long, TeamStatsDto> current = new HashMap<>();
+            for (TeamStatsDto stats : teamRepository.findAllStats()) {
+                current.put(stats.getTeamId(), stats);
+            }
+
+            Set<Long> teamIds = new HashSet<>(actual.keySet());
+            teamIds.addAll(current.keySet());
+            int count = 0;
+            for (Long teamId : teamIds) {
+                long[] expected = actual.getOrDefault(teamId, new long[2]);
+                TeamStatsDto stats = current.getOrDefault(teamId, new TeamStatsDto(teamId, 0L, 0L));
+                long memberCountDelta = expected[0] - stats.getMemberCount();
+                long ageSumDelta = expected[1] - stats.getAgeSum();
+                if (memberCountDelta != 0 || ageSumDelta != 0) {
+                    recorder.record(em, teamId, memberCountDelta, ageSumDelta);
+                    count++;
+                }
+            }
+            return count;
+        });
+
+        int result = corrected == null ? 0 : corrected;
+        if (result > 0) {
+            corrections.increment(result);
+            log.warn("TeamStats 보정 - {}개 팀의 통계가 실제 집계와 달랐습니다.", result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,231 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.dto.MemberSuggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * (userName, id)를 userName, id 순으로 정렬해서 배열 세 개에 담은 불변 인덱스
+ * - chars   : 모든 userName을 이어붙인 문자 배열 (String 객체 x)
+ * - offsets : i번째 userName은 chars[offsets[i], offsets[i + 1])
+ * - ids     : i번째 회원 id
+ * 회원 한 명당 userName 길이 * 2 + 12 바이트
+ */
+final class UsernameSnapshot {
+
+    static final Comparator<MemberSuggestion> ORDER = Comparator.comparing(MemberSuggestion::getUserName)
+            .thenComparing(MemberSuggestion::getId);
+
+    static final UsernameSnapshot EMPTY = new UsernameSnapshot(new char[0], new int[]{0}, new long[0], 0);
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final long[] ids;
+    private final int size;
+
+    private UsernameSnapshot(char[] chars, int[] offsets, long[] ids, int size) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.size = size;
+    }
+
+    /**
+     * 정렬된 순서로 받으면 그대로 쌓고, 순서가 어긋나면(DB 정렬 규칙이 다른 경우) 한 번 정렬한다.
+     */
+    static UsernameSnapshot build(Iterator<MemberSuggestion> sorted) {
+        Builder builder = new Builder();
+        MemberSuggestion previous = null;
+        List<MemberSuggestion> unsorted = null;
+        while (sorted.hasNext()) {
+            MemberSuggestion next = sorted.next();
+            if (unsorted != null) {
+                unsorted.add(next);
+                continue;
+            }
+            if (previous != null && ORDER.compare(previous, next) > 0) {
+                unsorted = new ArrayList<>(builder.toSnapshot().toList());
+                unsorted.add(next);
+                continue;
+            }
+            builder.add(next.getUserName(), next.getId());
+            previous = next;
+        }
+        if (unsorted == null) {
+            return builder.toSnapshot();
+        }
+        unsorted.sort(ORDER);
+        Builder sortedBuilder = new Builder();
+        unsorted.forEach(s -> sortedBuilder.add(s.getUserName(), s.getId()));
+        return sortedBuilder.toSnapshot();
+    }
+
+    /**
+     * 이 스냅샷(tombstone 제외) + overlay 를 합친 새 스냅샷 - 둘 다 정렬되어 있으므로 O(n) 병합
+     */
+    UsernameSnapshot merge(Iterable<MemberSuggestion> overlay, long[] tombstones) {
+        Builder builder = new Builder(chars.length, size);
+        Iterator<MemberSuggestion> it = overlay.iterator();
+        MemberSuggestion o = it.hasNext() ? it.next() : null;
+        int i = 0;
+        while (i < size || o != null) {
+            if (i < size && Arrays.binarySearch(tombstones, ids[i]) >= 0) {
+                i++;
+                continue;
+            }
+            if (o == null || (i < size && compare(i, o.getUserName(), o.getId()) < 0)) {
+                builder.add(chars, offsets[i], offsets[i + 1], ids[i]);
+                i++;
+            } else {
+                builder.add(o.getUserName(), o.getId());
+                o = it.hasNext() ? it.next() : null;
+            }
+        }
+        return builder.toSnapshot();
+    }
+
+    int size() {
+        return size;
+    }
+
+    long id(int i) {
+        return ids[i];
+    }
+
+    MemberSuggestion get(int i) {
+        return new MemberSuggestion(ids[i], new String(chars, offsets[i], offsets[i + 1] - offsets[i]));
+    }
+
+    /**
+     * userName >= prefix 인 첫 위치
+     */
+    int lowerBound(String prefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareName(mid, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    boolean startsWith(int i, String prefix) {
+        int from = offsets[i];
+        if (offsets[i + 1] - from < prefix.length()) {
+            return false;
+        }
+        for (int c = 0; c < prefix.length(); c++) {
+            if (chars[from + c] != prefix.charAt(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean contains(String userName, long id) {
+        int i = lowerBound(userName);
+        for (; i < size && compareName(i, userName) == 0; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * (i번째 userName, id) 와 (userName, id) 비교 - String.compareTo와 같은 순서
+     */
+    int compare(int i, String userName, long id) {
+        int result = compareName(i, userName);
+        return result != 0 ? result : Long.compare(ids[i], id);
+    }
+
+    private int compareName(int i, String userName) {
+        int from = offsets[i];
+        int length = offsets[i + 1] - from;
+        int min = Math.min(length, userName.length());
+        for (int c = 0; c < min; c++) {
+            char a = chars[from + c];
+            char b = userName.charAt(c);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - userName.length();
+    }
+
+    /**
+     * 배열이 차지하는 바이트 (배열 헤더 16바이트 포함)
+     */
+    long estimatedBytes() {
+        return 16L * 3 + chars.length * 2L + offsets.length * 4L + ids.length * 8L;
+    }
+
+    private List<MemberSuggestion> toList() {
+        List<MemberSuggestion> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    private static final class Builder {
+        private char[] chars;
+        private int[] offsets;
+        private long[] ids;
+        private int size;
+        private int length;
+
+        Builder() {
+            this(1024, 64);
+        }
+
+        Builder(int charCapacity, int capacity) {
+            this.chars = new char[Math.max(16, charCapacity)];
+            this.offsets = new int[Math.max(16, capacity) + 1];
+            this.ids = new long[Math.max(16, capacity)];
+        }
+
+        void add(String userName, long id) {
+            ensureChars(userName.length());
+            userName.getChars(0, userName.length(), chars, length);
+            append(userName.length(), id);
+        }
+
+        void add(char[] source, int from, int to, long id) {
+            ensureChars(to - from);
+            System.arraycopy(source, from, chars, length, to - from);
+            append(to - from, id);
+        }
+
+        private void append(int nameLength, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            ids[size] = id;
+            length += nameLength;
+            offsets[++size] = length;
+        }
+
+        private void ensureChars(int extra) {
+            if (length + extra > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + extra));
+            }
+        }
+
+        UsernameSnapshot toSnapshot() {
+            // 남는 용량은 잘라낸다.(스냅샷은 오래 살아있으므로)
+            return new UsernameSnapshot(Arrays.copyOf(chars, length), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(ids, size), size);
+        }
+    }
+}
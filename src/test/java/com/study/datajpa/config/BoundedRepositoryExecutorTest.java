@@ -0,0 +1,86 @@
+package com.study.datajpa.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BoundedRepositoryExecutorTest {
+
+    @Test
+    public void runsAtMostMaxConcurrencyTasks() throws Exception {
+        // 고정 스레드 풀 / 가상 스레드(JDK 21 이상) 둘 다 semaphore로 제한된다.
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (BoundedRepositoryExecutor executor = new BoundedRepositoryExecutor(2, 10, virtualThreads)) {
+                AtomicInteger running = new AtomicInteger();
+                AtomicInteger maxRunning = new AtomicInteger();
+                CountDownLatch release = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(6);
+
+                for (int i = 0; i < 6; i++) {
+                    executor.execute(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            release.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        done.countDown();
+                    });
+                }
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (executor.getActive() < 2 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                Thread.sleep(100); // 한도를 넘어 실행되는 작업이 있으면 이 사이에 시작된다.
+                assertThat(executor.getActive()).isEqualTo(2);
+                assertThat(executor.getPending()).isEqualTo(6);
+                assertThat(maxRunning.get()).isEqualTo(2);
+
+                release.countDown();
+                assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+                assertThat(maxRunning.get()).isEqualTo(2);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        try (BoundedRepositoryExecutor executor = new BoundedRepositoryExecutor(1, 1, false)) {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(3);
+            Runnable blocking = () -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            };
+
+            //when - 실행 1 + 대기 1 = 한도
+            executor.execute(blocking);
+            executor.execute(blocking);
+
+            //then - 더 쌓지 않고 바로 거절, 대기 수는 그대로
+            assertThatThrownBy(() -> executor.execute(blocking))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertThat(executor.getPending()).isEqualTo(2);
+
+            //then - 자리가 나면 다시 받는다.
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (executor.getPending() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            executor.execute(blocking);
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+}
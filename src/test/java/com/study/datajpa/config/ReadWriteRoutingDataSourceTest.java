@@ -0,0 +1,213 @@
+package com.study.datajpa.config;
+
+import com.study.datajpa.entity.Member;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+// H2 in-memory DB 두 개를 primary / replica로 두고 어느 쪽에서 읽었는지 확인한다.
+class ReadWriteRoutingDataSourceTest {
+
+    SimpleMeterRegistry registry;
+    DataSource primary;
+    DataSource replica;
+    List<LocalContainerEntityManagerFactoryBean> factories = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        factories.forEach(LocalContainerEntityManagerFactoryBean::destroy);
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() {
+        Routing routing = routing(replica, Duration.ZERO);
+
+        assertThat(routing.read()).isEqualTo("replica");
+        assertThat(routing.write()).isEqualTo("primary");
+        assertThat(connections("replica")).isEqualTo(1);
+        assertThat(connections("primary")).isEqualTo(1);
+    }
+
+    @Test
+    public void readAfterWriteStaysOnPrimaryWithinMaxLag() {
+        Routing routing = routing(replica, Duration.ofMinutes(1));
+
+        routing.write();
+
+        assertThat(routing.read()).isEqualTo("primary");
+        assertThat(registry.counter("datasource.routing.fallback", "reason", "lag").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void rolledBackWriteDoesNotKeepReadsOnPrimary() {
+        Routing routing = routing(replica, Duration.ofMinutes(1));
+
+        routing.writeAndRollback();
+
+        // 커밋된 쓰기가 없다. -> replica에서 읽는다.
+        assertThat(routing.read()).isEqualTo("replica");
+        assertThat(registry.counter("datasource.routing.fallback", "reason", "lag").count()).isZero();
+    }
+
+    @Test
+    public void replicaDownFallsBackToPrimary() {
+        // 존재하지 않는 DB - IFEXISTS라 커넥션을 얻지 못한다.
+        DataSource down = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";IFEXISTS=TRUE", "sa", "");
+        Routing routing = routing(down, Duration.ZERO);
+
+        assertThat(routing.read()).isEqualTo("primary");
+        assertThat(routing.read()).isEqualTo("primary"); // cooldown 동안은 replica를 시도하지 않는다.
+        assertThat(routing.dataSource.isReplicaAvailable()).isFalse();
+        assertThat(registry.counter("datasource.routing.fallback", "reason", "replica-down").count()).isEqualTo(2);
+        assertThat(registry.get("datasource.routing.replica.available").gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void jpaReadOnlyTransactionGoesToReplica() {
+        JpaRouting routing = jpaRouting(Duration.ZERO);
+
+        routing.save(new Member("primaryOnly", 10));
+
+        // replica에는 복제되지 않았다. (다른 DB) -> replica에서 읽으면 없다.
+        assertThat(routing.countMembers()).isZero();
+        assertThat(connections("replica")).isEqualTo(1);
+    }
+
+    @Test
+    public void jpaReadAfterWriteStaysOnPrimaryWithinMaxLag() {
+        JpaRouting routing = jpaRouting(Duration.ofMinutes(1));
+
+        routing.save(new Member("primaryOnly", 10));
+
+        // 같은 스레드가 방금 썼다. -> primary에서 읽는다.
+        assertThat(routing.countMembers()).isEqualTo(1);
+        assertThat(connections("replica")).isZero();
+        assertThat(registry.counter("datasource.routing.fallback", "reason", "lag").count()).isEqualTo(1);
+    }
+
+    private JpaRouting jpaRouting(Duration maxLag) {
+        entityManagerFactory(replica); // replica 스키마 (라우팅 DataSource로 만들면 primary에만 생긴다.)
+        return new JpaRouting(new ReadWriteRoutingDataSource(primary, replica, maxLag, Duration.ofMinutes(1), registry));
+    }
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.study.datajpa.entity");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.cache.use_second_level_cache", "false"));
+        factory.afterPropertiesSet();
+        factories.add(factory);
+        return factory;
+    }
+
+    private Routing routing(DataSource replica, Duration maxLag) {
+        return new Routing(new ReadWriteRoutingDataSource(primary, replica, maxLag, Duration.ofMinutes(1), registry));
+    }
+
+    private double connections(String target) {
+        return registry.counter("datasource.routing.connections", "target", target).count();
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table marker(name varchar(20))");
+        jdbcTemplate.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+
+    private class JpaRouting {
+        final EntityManager em;
+        final TransactionTemplate writeTx;
+        final TransactionTemplate readTx;
+
+        JpaRouting(ReadWriteRoutingDataSource dataSource) {
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(dataSource);
+            proxy.setDefaultAutoCommit(true);
+            proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            LocalContainerEntityManagerFactoryBean factory = entityManagerFactory(proxy); // 스키마는 트랜잭션 밖 -> primary
+            this.em = SharedEntityManagerCreator.createSharedEntityManager(factory.getObject());
+            JpaTransactionManager transactionManager = new JpaTransactionManager(factory.getObject());
+            this.writeTx = new TransactionTemplate(transactionManager);
+            this.readTx = new TransactionTemplate(transactionManager);
+            this.readTx.setReadOnly(true);
+        }
+
+        void save(Member member) {
+            writeTx.executeWithoutResult(status -> em.persist(member));
+        }
+
+        long countMembers() {
+            return readTx.execute(status -> em.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+        }
+    }
+
+    private static class Routing {
+        final ReadWriteRoutingDataSource dataSource;
+        final JdbcTemplate jdbcTemplate;
+        final TransactionTemplate writeTx;
+        final TransactionTemplate readTx;
+
+        Routing(ReadWriteRoutingDataSource dataSource) {
+            this.dataSource = dataSource;
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(dataSource);
+            proxy.setDefaultAutoCommit(true); // 기본값을 알려주지 않으면 커넥션을 하나 얻어서 확인한다.(카운트에 잡힘)
+            proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(proxy);
+            this.jdbcTemplate = new JdbcTemplate(proxy);
+            this.writeTx = new TransactionTemplate(transactionManager);
+            this.readTx = new TransactionTemplate(transactionManager);
+            this.readTx.setReadOnly(true);
+        }
+
+        String read() {
+            return readTx.execute(status -> jdbcTemplate.queryForObject("select name from marker", String.class));
+        }
+
+        String write() {
+            return writeTx.execute(status -> {
+                jdbcTemplate.update("update marker set name = name");
+                return jdbcTemplate.queryForObject("select name from marker", String.class);
+            });
+        }
+
+        void writeAndRollback() {
+            writeTx.executeWithoutResult(status -> {
+                jdbcTemplate.update("update marker set name = name");
+                status.setRollbackOnly();
+            });
+        }
+    }
+}
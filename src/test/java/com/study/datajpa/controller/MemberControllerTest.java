@@ -0,0 +1,119 @@
+package com.study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    // 다른 테스트가 커밋한 회원과 섞이지 않도록 따로 쓰는 나이/팀 이름
+    static final int AGE = 77;
+    static final String TEAM = "exportTeam";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MemberController memberController;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EntityManager em;
+
+    Long noTeamId;
+
+    @BeforeEach
+    void setUp() {
+        Team team = teamRepository.save(new Team(TEAM));
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("member" + i, AGE, team));
+        }
+        noTeamId = memberRepository.save(new Member("noTeam", AGE)).getId(); // 팀이 없어도 목록에는 나온다.
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void pagedDto() throws Exception {
+        mockMvc.perform(get("/members").param("age", String.valueOf(AGE)).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].username").value("noTeam"))
+                .andExpect(jsonPath("$.content[1].teamname").value(TEAM))
+                .andExpect(jsonPath("$.totalElements").value(6));
+    }
+
+    @Test
+    public void cursorDto() throws Exception {
+        String body = mockMvc.perform(get("/members/cursor").param("age", String.valueOf(AGE)).param("size", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(4))
+                .andReturn().getResponse().getContentAsString();
+        String nextCursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/members/cursor").param("age", String.valueOf(AGE)).param("size", "4").param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[1].username").value("member0"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void cursorRejectsBadSizeAndCursor() throws Exception {
+        for (String size : new String[]{"0", "-1", "1001"}) {
+            mockMvc.perform(get("/members/cursor").param("age", String.valueOf(AGE)).param("size", size))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(get("/members/cursor").param("age", String.valueOf(AGE)).param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportStreamsJsonArray() throws Exception {
+        // StreamingResponseBody 본문을 직접 실행 - 테스트 트랜잭션 안에서 읽는다.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberController.writeMembers(out);
+
+        JsonNode members = objectMapper.readTree(out.toByteArray());
+        assertThat(members.isArray()).isTrue();
+        assertThat(members).filteredOn(m -> TEAM.equals(m.get("teamname").asText()))
+                .extracting(m -> m.get("username").asText())
+                .containsExactlyInAnyOrder("member0", "member1", "member2", "member3", "member4");
+        // 팀이 없는 회원도 빠지지 않는다.
+        assertThat(members).filteredOn(m -> m.get("id").asLong() == noTeamId)
+                .singleElement()
+                .satisfies(m -> {
+                    assertThat(m.get("username").asText()).isEqualTo("noTeam");
+                    assertThat(m.get("teamname").isNull()).isTrue();
+                });
+    }
+}
@@ -0,0 +1,23 @@
+package com.study.datajpa.metrics;
+
+import com.study.datajpa.entity.Member;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+class EntityLoadCounterTest {
+
+    @Test
+    public void countsLoadsPerThread() throws Exception {
+        EntityLoadCounter counter = new EntityLoadCounter();
+
+        assertThat(counter.onLoad(new Member("member1", 10), 1L, new Object[0], new String[0], null)).isFalse(); // 상태는 바꾸지 않는다.
+        counter.onLoad(new Member("member2", 20), 2L, new Object[0], new String[0], null);
+
+        assertThat(counter.current()).isEqualTo(2);
+        CompletableFuture.runAsync(() -> counter.onLoad(new Member("member3", 30), 3L, new Object[0], new String[0], null)).get();
+        assertThat(counter.current()).isEqualTo(2);
+    }
+}
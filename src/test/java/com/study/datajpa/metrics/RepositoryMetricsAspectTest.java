@@ -0,0 +1,125 @@
+package com.study.datajpa.metrics;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 지연 로딩이 한 건씩 나가도록 batch fetch를 끈다. 커밋된 데이터로 확인하므로 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.default_batch_fetch_size=1")
+class RepositoryMetricsAspectTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void recordsStatementsAndRowsPerCall() {
+        //given
+        memberRepository.save(new Member("metrics1", 10));
+        memberRepository.save(new Member("metrics2", 20));
+        double callsBefore = summaryCount("repository.statements", "findAll");
+        double rowsBefore = rowsTotal("findAll");
+
+        //when
+        List<Member> members = memberRepository.findAll();
+
+        //then
+        assertThat(members).hasSize(2);
+        assertThat(summaryCount("repository.statements", "findAll")).isEqualTo(callsBefore + 1);
+        assertThat(rowsTotal("findAll") - rowsBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void lazyLoadsAfterCallAreCaughtPerTransaction() {
+        //given - 팀이 다른 회원 12명 (n-plus-one-threshold 10)
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 12; i++) {
+                memberRepository.save(new Member("lazy" + i, 10 + i, teamRepository.save(new Team("lazyTeam" + i))));
+            }
+        });
+        entityManagerFactory.getCache().evictAll(); // 팀을 2차 캐시가 아니라 DB에서 읽게
+        double perCallBefore = counter("repository.n_plus_one", "findAll");
+        double perTransactionBefore = counter("repository.transaction.n_plus_one", "findAll");
+
+        //when - 조회는 SQL 1개, 팀 지연 로딩은 리포지토리 호출이 끝난 뒤 12개
+        List<String> teamNames = tx.execute(status -> {
+            List<String> names = new ArrayList<>();
+            for (Member member : memberRepository.findAll()) {
+                names.add(member.getTeam().getName());
+            }
+            return names;
+        });
+
+        //then - 호출 단위로는 보이지 않고 트랜잭션 단위로 잡힌다.
+        assertThat(teamNames).hasSize(12);
+        assertThat(counter("repository.n_plus_one", "findAll")).isEqualTo(perCallBefore);
+        assertThat(counter("repository.transaction.n_plus_one", "findAll")).isEqualTo(perTransactionBefore + 1);
+        DistributionSummary loaded = meterRegistry.get("repository.transaction.entities.loaded")
+                .tag("repository", "MemberRepository").tag("method", "findAll").summary();
+        assertThat(loaded.max()).isGreaterThanOrEqualTo(24); // 회원 12 + 팀 12
+    }
+
+    @Test
+    public void transactionStartedByReadOnlyQueryIsTracked() {
+        //given
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                memberRepository.save(new Member("readOnlyTx", 10, teamRepository.save(new Team("readOnlyTxTeam")))));
+        double transactionsBefore = summaryCount("repository.transaction.statements", "findMemberDto");
+
+        //when - 트랜잭션 없이 호출 -> ReadOnlyQueryAspect가 readOnly 트랜잭션을 시작한다.
+        assertThat(memberRepository.findMemberDto()).extracting("username").contains("readOnlyTx");
+
+        //then - 지표 aspect가 그 트랜잭션 안에서 실행되어 트랜잭션 단위로도 잡힌다.
+        assertThat(summaryCount("repository.transaction.statements", "findMemberDto")).isEqualTo(transactionsBefore + 1);
+    }
+
+    private double counter(String name, String method) {
+        Counter counter = meterRegistry.find(name).tag("repository", "MemberRepository").tag("method", method).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private double rowsTotal(String method) {
+        DistributionSummary summary = meterRegistry.find("repository.rows").tag("repository", "MemberRepository").tag("method", method).summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    private double summaryCount(String name, String method) {
+        DistributionSummary summary = meterRegistry.find(name).tag("repository", "MemberRepository").tag("method", method).summary();
+        return summary == null ? 0 : summary.count();
+    }
+}
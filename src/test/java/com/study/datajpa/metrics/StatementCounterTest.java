@@ -0,0 +1,28 @@
+package com.study.datajpa.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StatementCounterTest {
+
+    @Test
+    public void countsStatementsAndSelectsPerThread() throws Exception {
+        StatementCounter counter = new StatementCounter();
+
+        counter.onStatement("select m.id from member m");
+        counter.onStatement("\n    SELECT count(*) from team");
+        counter.onStatement("insert into member (age, memeber_id) values (?, ?)");
+        counter.onStatement("update member set age = ? where memeber_id = ?");
+
+        assertThat(counter.current()).isEqualTo(4);
+        assertThat(counter.currentSelects()).isEqualTo(2);
+
+        // 다른 스레드의 SQL은 섞이지 않는다.
+        CompletableFuture.runAsync(() -> counter.onStatement("select 1")).get();
+        assertThat(counter.current()).isEqualTo(4);
+        assertThat(counter.currentSelects()).isEqualTo(2);
+    }
+}
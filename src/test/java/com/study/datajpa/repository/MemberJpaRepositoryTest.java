@@ -1,6 +1,8 @@
 package com.study.datajpa.repository;
 
 import com.study.datajpa.entity.Member;
+import org.hibernate.engine.spi.NamedQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -93,4 +95,20 @@ class MemberJpaRepositoryTest {
 
 
 
-}
\ No newline at end of file
+    @Test
+    public void namedQueriesAreRegisteredAtStartup() {
+        // 이름 있는 쿼리는 SessionFactory 생성 때 파싱/검증되어 등록된다. (문법 오류면 애플리케이션 시작이 실패)
+        NamedQueryDefinition definition = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getNamedQueryRepository()
+                .getNamedQueryDefinition("Member.findByPage");
+        assertThat(definition).isNotNull();
+        assertThat(definition.getQueryString()).isEqualTo("select m from Member m where m.age = :age order by m.userName desc");
+
+        memberJpaRepository.save(new Member("member1", 10));
+        memberJpaRepository.save(new Member("member2", 10));
+        List<Member> members = memberJpaRepository.findByPage(10, 0, 10); // 타입 있는 결과 (캐스팅 x)
+
+        assertThat(members).extracting(Member::getUserName).contains("member1", "member2");
+    }
+}
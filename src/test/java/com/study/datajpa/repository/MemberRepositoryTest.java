@@ -3,18 +3,26 @@ package com.study.datajpa.repository;
 import com.study.datajpa.dto.MemberDto;
 import com.study.datajpa.entity.Member;
 import com.study.datajpa.entity.Team;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
 import javax.swing.text.html.parser.Entity;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -33,6 +41,12 @@ class MemberRepositoryTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @Test
     public void testMember() {
         Member member = new Member("memberA");
@@ -100,6 +114,23 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void findByNamesChunked() {
+        //given - in 절 조각 크기(512)보다 많은 이름
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            memberRepository.save(new Member("member" + i, 10));
+            names.add("member" + i);
+        }
+        names.add("member0"); // 중복은 한 번만 조회
+
+        //when
+        List<Member> result = memberRepository.findByNames(names);
+
+        //then
+        assertThat(result).hasSize(1500);
+    }
+
     @Test
     public void returnType() {
         Member member1 = new Member("member1");
@@ -150,6 +181,134 @@ class MemberRepositoryTest {
         assertThat(page.hasNext()).isTrue(); //다음 페이지가 있는가?
     }
 
+    @Test
+    public void keysetPage() {
+        //given
+        memberRepository.save(new Member("member1", 10));
+        memberRepository.save(new Member("member2", 10));
+        memberRepository.save(new Member("member3", 10));
+        memberRepository.save(new Member("member4", 10));
+        memberRepository.save(new Member("member5", 10));
+
+        //when
+        KeysetSlice<Member> first = memberRepository.findByAgeKeyset(10, null, 3);
+        KeysetSlice<Member> second = memberRepository.findByAgeKeyset(10, first.getNextCursor(), 3);
+
+        //then - 다음 페이지는 커서 이후부터 조회된다.(offset 없음)
+        assertThat(first.getContent()).extracting("userName")
+                .containsExactly("member5", "member4", "member3");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting("userName")
+                .containsExactly("member2", "member1");
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void keysetPageSkipsNullUserNamesAndRejectsEmptyPage() {
+        //given - 페이지 경계에 userName이 null인 회원
+        memberRepository.save(new Member("member1", 83));
+        memberRepository.save(new Member("member2", 83));
+        memberRepository.save(new Member(null, 83));
+
+        //when
+        KeysetSlice<Member> first = memberRepository.findByAgeKeyset(83, null, 1);
+        KeysetSlice<Member> second = memberRepository.findByAgeKeyset(83, first.getNextCursor(), 1);
+
+        //then - null은 조회하지 않는다.(커서를 만들 수 없다.)
+        assertThat(first.getContent()).extracting("userName").containsExactly("member2");
+        assertThat(second.getContent()).extracting("userName").containsExactly("member1");
+        assertThat(second.hasNext()).isFalse();
+        assertThatThrownBy(() -> memberRepository.findByAgeKeyset(83, null, 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class) // 리포지토리 예외 변환
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 커밋 전 변경이 있는 트랜잭션의 count는 캐시하지 않으므로 트랜잭션 없이
+    public void cachedCountPage() {
+        //given
+        List<Member> members = new ArrayList<>();
+        members.add(memberRepository.save(new Member("member1", 81)));
+        members.add(memberRepository.save(new Member("member2", 81)));
+        members.add(memberRepository.save(new Member("member3", 81)));
+        members.add(memberRepository.save(new Member("member4", 81)));
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "userName"));
+
+        try {
+            //when
+            long saved = countCache.getSavedQueries();
+            Page<Member> first = memberRepository.findPageByAge(81, pageRequest, CountMode.CACHED);
+            Page<Member> second = memberRepository.findPageByAge(81, pageRequest, CountMode.CACHED); // count 쿼리 안나감
+
+            //then
+            assertThat(first.getTotalElements()).isEqualTo(4);
+            assertThat(second.getTotalElements()).isEqualTo(4);
+            assertThat(countCache.getSavedQueries()).isEqualTo(saved + 1);
+
+            //save(insert)가 나가면 캐시가 무효화되어 다시 센다.
+            members.add(memberRepository.save(new Member("member5", 81)));
+            Page<Member> third = memberRepository.findPageByAge(81, pageRequest, CountMode.CACHED);
+            assertThat(third.getTotalElements()).isEqualTo(5);
+        } finally {
+            memberRepository.deleteAll(members);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cachedCountIsInvalidatedOnCommit() {
+        //given
+        List<Member> members = new ArrayList<>();
+        members.add(memberRepository.save(new Member("member1", 82)));
+        members.add(memberRepository.save(new Member("member2", 82)));
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                //when - insert SQL은 나갔지만 아직 커밋 전
+                members.add(memberRepository.saveAndFlush(new Member("member3", 82)));
+
+                //then - 이 트랜잭션은 자기 변경을 보고, 그 값을 캐시하지 않는다.
+                long saved = countCache.getSavedQueries();
+                assertThat(memberRepository.findPageByAge(82, pageRequest, CountMode.CACHED).getTotalElements()).isEqualTo(3);
+                assertThat(memberRepository.findPageByAge(82, pageRequest, CountMode.CACHED).getTotalElements()).isEqualTo(3);
+                assertThat(countCache.getSavedQueries()).isEqualTo(saved);
+
+                //when - 다른 트랜잭션이 커밋 전 count(2)를 캐시한다.
+                long other = CompletableFuture.supplyAsync(() ->
+                                memberRepository.findPageByAge(82, pageRequest, CountMode.CACHED).getTotalElements())
+                        .join();
+                assertThat(other).isEqualTo(2);
+            });
+
+            //then - 커밋하면서 무효화되어 다시 센다.
+            assertThat(memberRepository.findPageByAge(82, pageRequest, CountMode.CACHED).getTotalElements()).isEqualTo(3);
+        } finally {
+            memberRepository.deleteAll(members);
+        }
+    }
+
+    @Test
+    public void streamAll() {
+        //given
+        for (int i = 0; i < 10; i++) {
+            memberRepository.save(new Member("member" + i, 10));
+        }
+        em.flush();
+        em.clear();
+
+        //when - 소비한 엔티티는 바로 evict 되므로 영속성 컨텍스트에 남지 않는다.
+        List<Member> consumed = new ArrayList<>();
+        try (Stream<Member> stream = memberRepository.streamByAge(10)) {
+            stream.forEach(consumed::add);
+        }
+
+        //then
+        assertThat(consumed).hasSize(10);
+        assertThat(consumed).noneMatch(em::contains);
+    }
+
     @Test
     public void bulkUpdate() {
         //given
@@ -201,4 +360,48 @@ class MemberRepositoryTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findTeamsWithMembers() {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        teamRepository.save(teamA);
+        teamRepository.save(teamB);
+        teamRepository.save(teamC);
+        memberRepository.save(new Member("member1", 10, teamA));
+        memberRepository.save(new Member("member2", 10, teamA));
+        memberRepository.save(new Member("member3", 10, teamB));
+
+        em.flush();
+        em.clear();
+
+        //when - 팀 id로 페이징 후 회원 fetch join (쿼리 2번)
+        List<Team> teams = teamRepository.findAllWithMembers(0, 2);
+
+        //then
+        assertThat(teams).extracting("name").containsExactly("teamA", "teamB");
+        assertThat(teams.get(0).getMembers()).hasSize(2);
+        assertThat(teams.get(1).getMembers()).hasSize(1);
+    }
+
+    @Test
+    public void secondLevelCache() {
+        //given
+        Team team = teamRepository.save(new Team("teamA"));
+        em.flush();
+        em.clear();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        //when - 첫 조회는 DB에서 읽고 2차 캐시에 넣는다. 영속성 컨텍스트를 비운 뒤 다시 조회하면 2차 캐시에서 가져온다.
+        teamRepository.findById(team.getId());
+        em.clear();
+        long hits = statistics.getSecondLevelCacheHitCount();
+        Team cached = teamRepository.findById(team.getId()).get();
+
+        //then
+        assertThat(cached.getName()).isEqualTo("teamA");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(hits + 1);
+    }
+}
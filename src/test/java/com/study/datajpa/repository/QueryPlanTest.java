@@ -0,0 +1,141 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.config.SqlStatementListener;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 자주 쓰는 조회가 인덱스를 타는지 검증
+ * 리포지토리 메소드를 실행해서 hibernate가 실제로 만든 SQL을 잡고, 파라미터(?)에 값을 채워서 H2 EXPLAIN 결과에 tableScan이 없는지 본다.
+ */
+@SpringBootTest
+@Transactional
+class QueryPlanTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    RecordingStatementListener recorder;
+
+    Long teamId;
+    Long memberId;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        RecordingStatementListener recordingStatementListener() {
+            return new RecordingStatementListener();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        Team team = teamRepository.save(new Team("teamA"));
+        teamId = team.getId();
+        for (int i = 0; i < 200; i++) {
+            Member member = memberRepository.save(new Member("member" + i, i % 20));
+            member.setTeam(team);
+            memberId = member.getId();
+        }
+        em.flush();
+        em.clear();
+        em.createNativeQuery("analyze").executeUpdate(); // 통계 갱신 - 옵티마이저가 인덱스 선택도를 알 수 있게
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions(); // 캐시 hit면 SQL이 안나간다.
+    }
+
+    @Test
+    public void memberHotPathQueriesUseIndexes() {
+        assertIndexed(() -> memberRepository.findByUsername("member1"), "'member1'");
+        assertIndexed(() -> memberRepository.findUser("member1", 1), "'member1'", "1");
+        assertIndexed(() -> memberRepository.findByUsernameAndAgeGreaterThan("member1", 0), "'member1'", "0");
+        assertIndexed(() -> memberRepository.findIdsByUsername("member1"), "'member1'");
+        assertIndexed(() -> memberRepository.findByNames(Arrays.asList("member1", "member2")), "'member1'", "'member2'");
+        assertIndexed(() -> memberRepository.findByAge(10, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "userName"))),
+                "10", "3", "10"); // content(age, limit) + count(age)
+        assertIndexed(() -> memberRepository.findByAgeKeyset(10, null, 3), "10", "4");
+        assertIndexed(() -> memberRepository.findByAgeKeyset(10, KeysetCursor.of("member50", memberId).encode(), 3),
+                "10", "'member50'", "'member50'", String.valueOf(memberId), "4");
+        assertIndexed(() -> memberJpaRepository.findByPage(10, 0, 3), "10", "3");
+        assertIndexed(() -> memberJpaRepository.totalCount(10), "10");
+        assertIndexed(() -> memberRepository.findMemberDtoById(memberId), String.valueOf(memberId));
+    }
+
+    @Test
+    public void teamMembersLazyLoadingUsesIndex() {
+        assertIndexed(() -> teamRepository.findById(teamId).get().getMembers().size(), String.valueOf(teamId));
+    }
+
+    /**
+     * 실행된 select마다 EXPLAIN - literals는 실행된 SQL들의 ? 순서대로 채울 값 (모자라면 마지막 값을 반복)
+     */
+    private void assertIndexed(Runnable repositoryCall, String... literals) {
+        recorder.start();
+        repositoryCall.run();
+        List<String> selects = recorder.stop();
+        assertThat(selects).as("실행된 select가 없음").isNotEmpty();
+
+        int next = 0;
+        for (String sql : selects) {
+            StringBuilder bound = new StringBuilder();
+            for (char c : sql.toCharArray()) {
+                if (c == '?') {
+                    bound.append(literals[Math.min(next++, literals.length - 1)]);
+                } else {
+                    bound.append(c);
+                }
+            }
+            String plan = String.valueOf(em.createNativeQuery("explain " + bound).getSingleResult());
+            assertThat(plan).as("풀 스캔 : " + plan).doesNotContainIgnoringCase("tableScan");
+        }
+    }
+
+    static class RecordingStatementListener implements SqlStatementListener {
+
+        private final ThreadLocal<List<String>> recorded = new ThreadLocal<>();
+
+        void start() {
+            recorded.set(new ArrayList<>());
+        }
+
+        List<String> stop() {
+            List<String> result = recorded.get();
+            recorded.remove();
+            return result;
+        }
+
+        @Override
+        public void onStatement(String sql) {
+            List<String> statements = recorded.get();
+            if (statements != null && sql.trim().toLowerCase().startsWith("select")) {
+                statements.add(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.entity.Member;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+// heavy 등급 동시 실행 1 - 느린 heavy 조회가 자리를 잡고 있는 동안 다른 heavy 조회가 거절되는지 본다.
+// slow 등급 타임아웃 1초 - SlowQueryRepository 쿼리가 바깥 트랜잭션 안에서도 잘리는지 본다.
+@SpringBootTest(properties = {
+        "app.query-policy.policies.heavy.max-concurrent=1",
+        "app.query-policy.policies.heavy.queue-timeout=50ms",
+        "app.query-policy.policies.slow.max-concurrent=1",
+        "app.query-policy.policies.slow.timeout=1s"
+})
+class QueryPolicyTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    SlowQueryRepository slowQueryRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void createSleepFunction() {
+        jdbcTemplate.execute("create alias if not exists POLICY_TEST_SLEEP for \"java.lang.Thread.sleep\"");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void heavyQueriesAreShedWhileLightQueriesRun() throws Exception {
+        //given
+        Long memberId = memberRepository.save(new Member("policyMember", 61)).getId();
+        double rejectedBefore = rejected("heavy");
+
+        //when - 느린 heavy 조회(3초 이상)가 자리를 모두 잡고 있다.
+        CompletableFuture<Long> slowHeavy = CompletableFuture.supplyAsync(() -> slowQueryRepository.countSlowlyAsHeavy(1500));
+        while (activeHeavy() < 1 && !slowHeavy.isDone()) {
+            Thread.sleep(1);
+        }
+
+        //then - heavy 조회는 queue-timeout 후 거절, light 조회는 영향 없음
+        assertThatThrownBy(() -> memberRepository.findMemberFetchJoin())
+                .isInstanceOf(QueryRejectedException.class)
+                .extracting("policy").isEqualTo("heavy");
+        assertThatThrownBy(() -> memberJpaRepository.findAll())
+                .isInstanceOf(QueryRejectedException.class);
+        assertThat(memberRepository.findById(memberId)).isPresent();
+        assertThat(memberJpaRepository.findById(memberId)).isPresent();
+        assertThat(slowHeavy.get(10, TimeUnit.SECONDS)).isEqualTo(1500);
+
+        //then - 자리가 나면 다시 실행된다.
+        assertThat(memberRepository.findMemberFetchJoin()).extracting(Member::getId).contains(memberId);
+        assertThat(rejected("heavy") - rejectedBefore).isEqualTo(2);
+        assertThat(meterRegistry.get("repository.query.policy.queue").tag("policy", "heavy").timer().count())
+                .isGreaterThanOrEqualTo(3);
+        assertThat(activeHeavy()).isZero();
+    }
+
+    @Test
+    public void queryTimeoutAppliesInsideExistingTransaction() {
+        //given - row 하나에 2ms 이상, 5000 row면 10초 이상 걸리는 쿼리
+        double timeoutsBefore = timeouts("slow");
+
+        //when - 바깥 트랜잭션(timeout 없음) 안에서 호출
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                slowQueryRepository.countSlowly(5000)))
+                .isInstanceOf(RuntimeException.class);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //then - slow 등급 timeout(1초)에서 잘리고 타임아웃으로 집계된다.
+        assertThat(elapsedMillis).isLessThan(8000);
+        assertThat(timeouts("slow") - timeoutsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void subSecondRemainingTransactionTimeIsRejected() {
+        //given - 바깥 트랜잭션 timeout 1초 -> 호출 시점에는 1초 미만 남는다.
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setTimeout(1);
+
+        //then - 쿼리 타임아웃(초 단위)이 0(제한 없음)이 되지 않도록 실행하지 않는다.
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select policy_test_sleep(10)", Object.class);
+            slowQueryRepository.countSlowly(5000);
+        })).isInstanceOf(TransactionTimedOutException.class);
+    }
+
+    private double timeouts(String policy) {
+        return meterRegistry.get("repository.query.policy.timeouts").tag("policy", policy).counter().count();
+    }
+
+    private double activeHeavy() {
+        return meterRegistry.get("repository.query.policy.active").tag("policy", "heavy").gauge().value();
+    }
+
+    private double rejected(String policy) {
+        return meterRegistry.get("repository.query.policy.rejected").tag("policy", policy).counter().count();
+    }
+}
@@ -0,0 +1,98 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.dto.MemberNameAgeDto;
+import com.study.datajpa.entity.Member;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ReadOnlyQueryTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @BeforeEach
+    void setUp() {
+        memberRepository.save(new Member("member1", 10));
+        memberRepository.save(new Member("member2", 10));
+        memberRepository.save(new Member("member3", 20));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void readOnlyEntityHasNoSnapshot() {
+        //when - 쓰기 트랜잭션 안이지만 @ReadOnlyQuery라 읽기 전용으로 로딩
+        Page<Member> page = memberRepository.findProjectedByAge(10, PageRequest.of(0, 10), Member.class);
+
+        //then - 영속 상태이지만 스냅샷(loadedState)이 없다. -> flush 때 dirty checking 대상 아님
+        PersistenceContext persistenceContext = em.unwrap(SessionImplementor.class).getPersistenceContext();
+        assertThat(page.getContent()).hasSize(2);
+        for (Member member : page.getContent()) {
+            EntityEntry entry = persistenceContext.getEntry(member);
+            assertThat(entry.isReadOnly()).isTrue();
+            assertThat(entry.getLoadedState()).isNull();
+        }
+
+        // 변경해도 update가 나가지 않는다.
+        page.getContent().get(0).setAge(99);
+        em.flush();
+        em.clear();
+        assertThat(memberRepository.findProjectedByAge(99, PageRequest.of(0, 10), Member.class)).isEmpty();
+    }
+
+    @Test
+    public void pendingChangesAreFlushedAndManagedEntitiesStayWritable() {
+        //given - 쓰기 트랜잭션에서 로딩해 변경했지만 아직 flush 전
+        Member member1 = em.createQuery("select m from Member m where m.userName = :userName and m.age = 10", Member.class)
+                .setParameter("userName", "member1")
+                .getResultList().get(0);
+        member1.setAge(31);
+
+        //when
+        Page<Member> page = memberRepository.findProjectedByAge(31, PageRequest.of(0, 10), Member.class);
+
+        //then - 조회 전에 flush되어 변경이 보이고, 이미 영속 상태였던 엔티티는 읽기 전용이 되지 않는다.
+        assertThat(page.getContent()).extracting(Member::getId).contains(member1.getId());
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        assertThat(session.getPersistenceContext().getEntry(member1).isReadOnly()).isFalse();
+        assertThat(session.isDefaultReadOnly()).isFalse();
+
+        // 호출 뒤 변경도 반영된다.
+        member1.setAge(32);
+        em.flush();
+        em.clear();
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(32);
+    }
+
+    @Test
+    public void projectionLoadsNoEntity() {
+        //when
+        List<MemberSummary> summaries = memberRepository.findProjectedByUserNameIn(
+                Arrays.asList("member1", "member3"), MemberSummary.class);
+        List<MemberNameAgeDto> dtos = memberRepository.findProjectedByUserNameAndAge("member1", 10, MemberNameAgeDto.class);
+
+        //then - 엔티티가 아니므로 영속성 컨텍스트에 아무것도 올라가지 않는다.
+        assertThat(summaries).extracting(MemberSummary::getUserName).containsExactlyInAnyOrder("member1", "member3");
+        assertThat(dtos).extracting(MemberNameAgeDto::getAge).containsExactly(10);
+        assertThat(em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities()).isZero();
+    }
+}
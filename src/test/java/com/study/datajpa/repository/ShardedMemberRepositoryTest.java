@@ -0,0 +1,262 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.service.MemberReshardService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 샤드 3개 = H2 메모리 DB 3개. 샤드마다 id 구간 100만씩
+@SpringBootTest(properties = {
+        "app.sharding.enabled=true",
+        "app.sharding.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "app.sharding.range-size=1000000",
+        "app.sharding.ddl-auto=create",
+        "app.sharding.reshard-batch-size=2"
+})
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+
+    @Autowired
+    MemberReshardService reshardService;
+
+    @AfterEach
+    void cleanUp() {
+        for (MemberShard shard : shardedMemberRepository.getShards()) {
+            shard.jdbc("test.cleanUp", jdbc -> jdbc.update("delete from member") + jdbc.update("delete from team"));
+        }
+    }
+
+    @Test
+    public void routesByIdAndMergesPages() {
+        //given - 팀 없는 회원은 샤드를 돌아가며 저장
+        List<Member> saved = new ArrayList<>();
+        for (String name : List.of("e", "b", "h", "a", "j", "c", "g", "d", "i", "f")) {
+            saved.add(shardedMemberRepository.save(new Member("shard-" + name, 33)));
+        }
+
+        //then - id 구간 = 저장된 샤드
+        ShardRouter router = shardedMemberRepository.getRouter();
+        assertThat(saved.stream().map(m -> router.shardForMember(m.getId())).distinct()).hasSize(3);
+        for (Member member : saved) {
+            assertThat(shardedMemberRepository.findById(member.getId()))
+                    .hasValueSatisfying(found -> assertThat(found.getUserName()).isEqualTo(member.getUserName()));
+        }
+
+        //when - 샤드마다 정렬된 결과를 합쳐서 페이지
+        Page<Member> page = shardedMemberRepository.findByAge(33,
+                PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "userName")));
+
+        //then - 한 DB에서 정렬한 것과 같은 순서
+        List<String> expected = saved.stream().map(Member::getUserName)
+                .sorted(Comparator.reverseOrder()).skip(3).limit(3).collect(Collectors.toList());
+        assertThat(page.getContent()).extracting(Member::getUserName).containsExactlyElementsOf(expected);
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(page.getTotalPages()).isEqualTo(4);
+        assertThat(shardedMemberRepository.count()).isEqualTo(10);
+        assertThat(shardedMemberRepository.findByNames(List.of("shard-a", "shard-j", "none")))
+                .extracting(Member::getUserName).containsExactlyInAnyOrder("shard-a", "shard-j");
+
+        //when - 삭제도 id 구간 샤드로
+        shardedMemberRepository.deleteById(saved.get(0).getId());
+
+        //then
+        assertThat(shardedMemberRepository.findById(saved.get(0).getId())).isEmpty();
+        assertThat(shardedMemberRepository.countByAge(33)).isEqualTo(9);
+        assertThatThrownBy(() -> shardedMemberRepository.findByAge(33, PageRequest.of(0, 3, Sort.by("team"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void movesRangeOfMembersWithoutTeam() {
+        //given - 팀 없는 회원을 원래 샤드가 다음 id 블록(50개)을 받을 때까지 저장 -> 앞 블록은 옮길 수 있다.
+        ShardRouter router = shardedMemberRepository.getRouter();
+        List<Member> saved = new ArrayList<>();
+        List<Member> onSource = new ArrayList<>();
+        int sourceShard = -1;
+        while (onSource.size() < 2 || lastId(onSource) - onSource.get(1).getId() < 50) {
+            Member member = shardedMemberRepository.save(new Member("reshard" + saved.size(), 45));
+            saved.add(member);
+            if (sourceShard < 0) {
+                sourceShard = router.shardForMember(member.getId());
+            }
+            if (router.shardForMember(member.getId()) == sourceShard) {
+                onSource.add(member);
+            }
+        }
+        int targetShard = (sourceShard + 1) % 3;
+        long fromId = onSource.get(0).getId();
+        long toId = onSource.get(1).getId() + 1;
+
+        //when - 원래 샤드의 두 명 구간을 다른 샤드로 옮긴다. (batch 2건씩)
+        long moved = reshardService.moveRange(fromId, toId, targetShard);
+
+        //then - 조회는 옮긴 샤드로, 원래 샤드에는 남지 않는다.(두 번 세지 않는다.)
+        assertThat(moved).isEqualTo(2);
+        assertThat(router.shardForMember(fromId)).isEqualTo(targetShard);
+        assertThat(router.isFenced(fromId)).isFalse();
+        assertThat(shardedMemberRepository.findById(onSource.get(1).getId()))
+                .hasValueSatisfying(found -> assertThat(found.getUserName()).isEqualTo(onSource.get(1).getUserName()));
+        assertThat(countOn(sourceShard, fromId, toId)).isZero();
+        assertThat(shardedMemberRepository.countByAge(45)).isEqualTo(saved.size());
+
+        //when - 옮긴 뒤 삭제도 새 샤드로
+        shardedMemberRepository.deleteById(fromId);
+
+        //then
+        assertThat(shardedMemberRepository.findById(fromId)).isEmpty();
+        assertThat(shardedMemberRepository.countByAge(45)).isEqualTo(saved.size() - 1);
+
+        //then - 원래 샤드가 지금 쓰고 있는 id 블록은 옮길 수 없다.
+        long currentId = lastId(onSource);
+        int otherShard = (sourceShard + 2) % 3;
+        assertThatThrownBy(() -> reshardService.moveRange(currentId, currentId + 1, otherShard))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(router.shardForMember(currentId)).isEqualTo(sourceShard);
+    }
+
+    @Test
+    public void insertsDuringMoveAreNotLost() throws Exception {
+        //given - 옮길 구간 (원래 샤드가 다음 id 블록을 받은 뒤)
+        ShardRouter router = shardedMemberRepository.getRouter();
+        List<Member> onSource = new ArrayList<>();
+        int sourceShard = -1;
+        int before = 0;
+        while (onSource.size() < 2 || lastId(onSource) - onSource.get(1).getId() < 50) {
+            Member member = shardedMemberRepository.save(new Member("concurrent" + before++, 48));
+            if (sourceShard < 0) {
+                sourceShard = router.shardForMember(member.getId());
+            }
+            if (router.shardForMember(member.getId()) == sourceShard) {
+                onSource.add(member);
+            }
+        }
+        long fromId = onSource.get(0).getId();
+        long toId = onSource.get(1).getId() + 1;
+
+        //when - 옮기는 동안 다른 스레드가 계속 새 회원을 저장
+        List<Long> inserted = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> inserts = executor.submit(() -> {
+            int i = 0;
+            while (!stop.get()) {
+                try {
+                    inserted.add(shardedMemberRepository.save(new Member("during" + i++, 48)).getId());
+                } catch (TransientDataAccessResourceException e) {
+                    // 재분배 중인 구간의 id를 받았다 - 롤백됐으므로 세지 않는다.
+                }
+            }
+        });
+        try {
+            while (inserted.size() < 10 && !inserts.isDone()) {
+                Thread.sleep(1);
+            }
+            reshardService.moveRange(fromId, toId, (sourceShard + 1) % 3);
+            int afterMove = inserted.size();
+            while (inserted.size() < afterMove + 10 && !inserts.isDone()) {
+                Thread.sleep(1);
+            }
+        } finally {
+            stop.set(true);
+            inserts.get(10, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        //then - 저장에 성공한 회원은 모두 한 번씩 조회된다.(복사 안 된 채 지워지거나 원래 샤드에 남지 않는다.)
+        assertThat(countOn(sourceShard, fromId, toId)).isZero();
+        assertThat(shardedMemberRepository.countByAge(48)).isEqualTo(before + inserted.size());
+        for (Long id : inserted) {
+            assertThat(shardedMemberRepository.findById(id)).isPresent();
+        }
+    }
+
+    private long countOn(int shard, long fromId, long toId) {
+        return shardedMemberRepository.getShards().get(shard).jdbc("test.count", jdbc ->
+                jdbc.queryForObject("select count(*) from member where memeber_id >= ? and memeber_id < ?", Long.class, fromId, toId));
+    }
+
+    private static long lastId(List<Member> members) {
+        return members.get(members.size() - 1).getId();
+    }
+
+    @Test
+    public void teamMembersAreCoLocatedAndNotMoved() {
+        //given - 팀 회원은 팀과 같은 샤드
+        Team team = shardedMemberRepository.saveTeam(new Team("shardTeam"));
+        int teamShard = shardedMemberRepository.getRouter().shardForTeam(team.getId());
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            members.add(shardedMemberRepository.save(new Member("moved" + i, 44, team)));
+        }
+        assertThat(members).allSatisfy(member ->
+                assertThat(shardedMemberRepository.getRouter().shardForMember(member.getId())).isEqualTo(teamShard));
+
+        //when - 팀은 팀 샤드에 고정이므로 팀 회원 구간은 옮기지 않는다.
+        int targetShard = (teamShard + 1) % 3;
+        long fromId = members.get(0).getId();
+        long toId = members.get(2).getId() + 1;
+
+        //then - 아무것도 바뀌지 않는다.
+        assertThatThrownBy(() -> reshardService.moveRange(fromId, toId, targetShard))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(shardedMemberRepository.getRouter().shardForMember(fromId)).isEqualTo(teamShard);
+        assertThat(shardedMemberRepository.getRouter().isFenced(fromId)).isFalse();
+        Long onTarget = shardedMemberRepository.getShards().get(targetShard).jdbc("test.count", jdbc ->
+                jdbc.queryForObject("select count(*) from member", Long.class));
+        assertThat(onTarget).isZero();
+        assertThat(shardedMemberRepository.countByAge(44)).isEqualTo(5);
+
+        //then - 원래 샤드가 앞으로 발급할 id 구간은 옮길 수 없다.
+        long lastId = members.get(4).getId();
+        assertThatThrownBy(() -> reshardService.moveRange(lastId + 1, lastId + 100, targetShard))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void writesToFencedRangeAreRejected() {
+        //given
+        ShardRouter router = shardedMemberRepository.getRouter();
+        Member member = shardedMemberRepository.save(new Member("fenced", 46));
+
+        //when - 재분배 중인 구간
+        router.fence(member.getId(), member.getId() + 1);
+        try {
+            //then - 수정/삭제는 거절, 조회는 된다.
+            member.setAge(47);
+            assertThatThrownBy(() -> shardedMemberRepository.save(member))
+                    .isInstanceOf(TransientDataAccessResourceException.class);
+            assertThatThrownBy(() -> shardedMemberRepository.deleteById(member.getId()))
+                    .isInstanceOf(TransientDataAccessResourceException.class);
+            assertThat(shardedMemberRepository.findById(member.getId()))
+                    .hasValueSatisfying(found -> assertThat(found.getAge()).isEqualTo(46));
+        } finally {
+            router.unfence(member.getId(), member.getId() + 1);
+        }
+
+        //then - fence가 풀리면 다시 쓸 수 있다.
+        shardedMemberRepository.deleteById(member.getId());
+        assertThat(shardedMemberRepository.findById(member.getId())).isEmpty();
+    }
+}
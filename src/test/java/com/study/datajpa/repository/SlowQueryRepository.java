@@ -0,0 +1,19 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.entity.Member;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+
+/**
+ * 쿼리 타임아웃 테스트용 - row 마다 POLICY_TEST_SLEEP(ms)을 호출한다. (함수는 QueryPolicyTest에서 만든다.)
+ */
+@QueryPolicy("slow")
+public interface SlowQueryRepository extends Repository<Member, Long> {
+
+    @Query(value = "select count(*) from system_range(1, ?1) where policy_test_sleep(2) is null", nativeQuery = true)
+    long countSlowly(int rows);
+
+    @QueryPolicy("heavy")
+    @Query(value = "select count(*) from system_range(1, ?1) where policy_test_sleep(2) is null", nativeQuery = true)
+    long countSlowlyAsHeavy(int rows);
+}
@@ -0,0 +1,137 @@
+package com.study.datajpa.repository;
+
+import com.study.datajpa.dto.TeamStatsDto;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.service.MemberBulkUpdateService;
+import com.study.datajpa.service.MemberCommandService;
+import com.study.datajpa.service.TeamStatsReconciler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 통계는 커밋 직전에 반영되므로 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest
+class TeamStatsTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    MemberCommandService commandService;
+
+    @Autowired
+    MemberBulkUpdateService bulkUpdateService;
+
+    @Autowired
+    TeamStatsReconciler reconciler;
+
+    @Autowired
+    TeamStatsRecorder teamStatsRecorder;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void statsFollowMemberChanges() {
+        //given - teamA : 10, 20 / teamB : 30
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team teamA = teamRepository.save(new Team("teamA"));
+            Team teamB = teamRepository.save(new Team("teamB"));
+            Member member1 = memberRepository.save(new Member("member1", 10, teamA));
+            memberRepository.save(new Member("member2", 20, teamA));
+            memberRepository.save(new Member("member3", 30, teamB));
+            return new Long[]{teamA.getId(), teamB.getId(), member1.getId()};
+        });
+        Long teamA = ids[0], teamB = ids[1], member1 = ids[2];
+        assertStats(teamA, 2, 30);
+        assertStats(teamB, 1, 30);
+
+        //when - member1(10) teamA -> teamB
+        commandService.changeTeam(member1, teamB);
+        assertStats(teamA, 1, 20);
+        assertStats(teamB, 2, 40);
+
+        //when - age >= 20 나이 +1 (JPQL 벌크, JDBC 청크)
+        tx.executeWithoutResult(status -> memberRepository.bulkAgePlus(20));
+        assertStats(teamA, 1, 21);
+        assertStats(teamB, 2, 41);
+        bulkUpdateService.bulkAgePlus(21, 100);
+        assertStats(teamA, 1, 22);
+        assertStats(teamB, 2, 42);
+
+        //when - 삭제
+        tx.executeWithoutResult(status -> memberRepository.deleteById(member1));
+        assertStats(teamB, 1, 32);
+
+        //when - 롤백된 변경은 반영되지 않는다.
+        tx.executeWithoutResult(status -> {
+            memberRepository.save(new Member("member4", 50, teamRepository.findById(teamA).get()));
+            status.setRollbackOnly();
+        });
+        assertStats(teamA, 1, 22);
+    }
+
+    @Test
+    public void reconcileFixesDrift() {
+        //given
+        Long teamId = new TransactionTemplate(transactionManager).execute(status -> {
+            Team team = teamRepository.save(new Team("teamA"));
+            memberRepository.save(new Member("member1", 10, team));
+            return team.getId();
+        });
+        jdbcTemplate.update("update team_stats set member_count = member_count + 5 where team_id = ?", teamId);
+        assertStats(teamId, 6, 10);
+
+        //when
+        int corrected = reconciler.reconcile();
+
+        //then
+        assertThat(corrected).isPositive(); // 다른 테스트가 이벤트 없이 지운 데이터도 같이 보정될 수 있다.
+        assertStats(teamId, 1, 10);
+        assertThat(reconciler.reconcile()).isZero();
+    }
+
+    @Test
+    public void missingStatsRowsAreSeeded() {
+        //given - 통계 row가 없는 팀 (이 기능 이전에 만든 팀)
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> teamRepository.save(new Team("legacyTeam")).getId());
+        jdbcTemplate.update("delete from team_stats where team_id = ?", teamId);
+
+        //when
+        tx.executeWithoutResult(status -> memberRepository.save(new Member("legacy1", 40, teamRepository.findById(teamId).get())));
+        tx.executeWithoutResult(status -> memberRepository.save(new Member("legacy2", 41, teamRepository.findById(teamId).get())));
+
+        //then - stripe row가 모두 만들어지고 증감분은 더해진다.
+        assertThat(jdbcTemplate.queryForObject("select count(*) from team_stats where team_id = ?", Integer.class, teamId))
+                .isEqualTo(teamStatsRecorder.getStripes());
+        assertStats(teamId, 2, 81);
+    }
+
+    private void assertStats(Long teamId, long memberCount, long ageSum) {
+        TeamStatsDto stats = teamRepository.findStats(teamId);
+        assertThat(stats.getMemberCount()).as("member count").isEqualTo(memberCount);
+        assertThat(stats.getAgeSum()).as("age sum").isEqualTo(ageSum);
+    }
+}
@@ -0,0 +1,164 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+// flush는 별도 트랜잭션으로 커밋되므로 테스트 트랜잭션 없이 실행한다. max-delay를 길게 두고 flush 시점을 테스트에서 정한다.
+@SpringBootTest(properties = {
+        "app.age-write-buffer.enabled=true",
+        "app.age-write-buffer.max-delay=1h",
+        "app.age-write-buffer.flush-threshold=3"
+})
+class MemberAgeWriteBufferTest {
+
+    @Autowired
+    MemberAgeWriteBuffer writeBuffer;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        writeBuffer.flush();
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void coalescesUpdatesIntoOneRow() throws Exception {
+        //given
+        Member member = new TransactionTemplate(transactionManager).execute(status ->
+                memberRepository.save(new Member("buffered", 10, teamRepository.save(new Team("bufferTeam")))));
+        Long teamId = member.getTeam().getId();
+        long versionBefore = version(member.getId());
+
+        //when - 4 스레드가 같은 회원 나이를 100번씩 +1, 없는 회원도 하나
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    writeBuffer.addAge(member.getId(), 1);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        writeBuffer.addAge(-1L, 3);
+
+        //then - flush 전에는 DB에 없다.
+        assertThat(writeBuffer.getPendingDelta(member.getId())).isEqualTo(400);
+        assertThat(memberRepository.findById(member.getId()).get().getAge()).isEqualTo(10);
+
+        //when
+        int flushed = writeBuffer.flush();
+
+        //then - update 1건, version도 1만 증가, 팀 통계도 같이
+        assertThat(flushed).isEqualTo(1);
+        assertThat(writeBuffer.getPendingSize()).isZero();
+        assertThat(memberRepository.findById(member.getId()).get().getAge()).isEqualTo(410);
+        assertThat(version(member.getId())).isEqualTo(versionBefore + 1);
+        assertThat(teamRepository.findStats(teamId).getAgeSum()).isEqualTo(410);
+    }
+
+    @Test
+    public void flushesWhenThresholdIsReached() throws Exception {
+        //given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(memberRepository.save(new Member("threshold" + i, 20)).getId());
+        }
+
+        //when - 버퍼의 회원 수가 flush-threshold(3)
+        ids.forEach(id -> writeBuffer.addAge(id, 5));
+
+        //then - max-delay(1h)를 기다리지 않고 반영된다.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writeBuffer.getPendingSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(writeBuffer.getPendingSize()).isZero();
+        assertThat(writeBuffer.flush()).isZero(); // 진행 중인 flush가 커밋될 때까지 기다린다.
+        assertThat(memberRepository.findAllById(ids)).extracting(Member::getAge).containsOnly(25);
+    }
+
+    @Test
+    public void inFlightDeltasStayVisibleUntilCommit() throws Exception {
+        //given - 다른 트랜잭션이 회원 row 락을 잡고 있다.
+        Long memberId = memberRepository.save(new Member("inFlight", 30)).getId();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = pool.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select age from member where memeber_id = ? for update", Integer.class, memberId);
+            locked.countDown();
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+        writeBuffer.addAge(memberId, 2);
+
+        //when - flush가 버퍼를 비우고 락을 기다리는 동안
+        Future<Integer> flushed = pool.submit(writeBuffer::flush);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writeBuffer.getPendingSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        //then - 버퍼는 비었지만 커밋 전이므로 증감분은 계속 보인다.
+        try {
+            assertThat(writeBuffer.getPendingSize()).isZero();
+            assertThat(flushed.isDone()).isFalse();
+            assertThat(writeBuffer.getPendingDelta(memberId)).isEqualTo(2);
+        } finally {
+            release.countDown();
+        }
+        holder.get(1, TimeUnit.MINUTES);
+        assertThat(flushed.get(1, TimeUnit.MINUTES)).isEqualTo(1);
+        pool.shutdown();
+        assertThat(writeBuffer.getPendingDelta(memberId)).isZero();
+        assertThat(memberRepository.findById(memberId).get().getAge()).isEqualTo(32);
+    }
+
+    private long version(Long memberId) {
+        return jdbcTemplate.queryForObject("select version from member where memeber_id = ?", Long.class, memberId);
+    }
+}
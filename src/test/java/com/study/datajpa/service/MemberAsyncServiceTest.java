@@ -0,0 +1,79 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.CountMode;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 조회는 다른 스레드의 트랜잭션에서 실행되므로 데이터를 커밋해두고 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest
+class MemberAsyncServiceTest {
+
+    @Autowired
+    MemberAsyncService asyncService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void resultsArePropagated() throws Exception {
+        //given
+        Long teamId = new TransactionTemplate(transactionManager).execute(status -> {
+            Team team = teamRepository.save(new Team("asyncTeam"));
+            for (int i = 0; i < 3; i++) {
+                memberRepository.save(new Member("async" + i, 71, team));
+            }
+            return team.getId();
+        });
+
+        //when
+        Page<Member> page = asyncService.findByAge(71, PageRequest.of(0, 2, Sort.by("userName")), CountMode.EXACT)
+                .get(10, TimeUnit.SECONDS);
+
+        //then - content와 count가 합쳐진 한 페이지
+        assertThat(page.getContent()).extracting(Member::getUserName).containsExactly("async0", "async1");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getTotalPages()).isEqualTo(2);
+        assertThat(asyncService.findTeam(teamId).get(10, TimeUnit.SECONDS))
+                .hasValueSatisfying(team -> assertThat(team.getName()).isEqualTo("asyncTeam"));
+        assertThat(asyncService.findTeam(-1L).get(10, TimeUnit.SECONDS)).isEmpty();
+        assertThat(asyncService.countMembers().get(10, TimeUnit.SECONDS)).isEqualTo(memberRepository.count());
+    }
+
+    @Test
+    public void failuresArePropagated() {
+        //when - 리포지토리 예외는 future 실패로 전달된다.
+        assertThatThrownBy(() -> asyncService.findTeam(null).get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+}
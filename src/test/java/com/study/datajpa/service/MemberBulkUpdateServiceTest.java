@@ -0,0 +1,119 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 청크마다 별도 트랜잭션(REQUIRES_NEW)으로 커밋하므로 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest
+class MemberBulkUpdateServiceTest {
+
+    @Autowired
+    MemberBulkUpdateService bulkUpdateService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void bulkAgePlusInChunks() {
+        //given - 10명 중 age >= 20 은 5명
+        for (int i = 0; i < 10; i++) {
+            memberRepository.save(new Member("member" + i, i < 5 ? 10 : 20));
+        }
+
+        //when - 3건씩 4개 청크
+        List<BulkUpdateProgress> progresses = new ArrayList<>();
+        BulkUpdateProgress result = bulkUpdateService.bulkAgePlus(20, 3, 0L, progresses::add);
+
+        //then
+        assertThat(result.getUpdated()).isEqualTo(5);
+        assertThat(result.isDone()).isTrue();
+        assertThat(progresses).hasSize(4);
+        assertThat(memberRepository.findProjectedByAge(21, Pageable.unpaged(), Member.class)
+                .getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    public void resumeFromLastCommittedChunk() {
+        //given
+        for (int i = 0; i < 6; i++) {
+            memberRepository.save(new Member("member" + i, 10));
+        }
+
+        //when - 첫 청크 커밋 후 중단되었다고 가정하고 마지막 커밋 지점(lastId)부터 재시작
+        List<BulkUpdateProgress> progresses = new ArrayList<>();
+        assertThatThrownBy(() -> bulkUpdateService.bulkAgePlus(10, 2, 0L, progress -> {
+            progresses.add(progress);
+            throw new IllegalStateException("중단");
+        })).isInstanceOf(IllegalStateException.class);
+        BulkUpdateProgress result = bulkUpdateService.bulkAgePlus(10, 2, progresses.get(0).getLastId(),
+                BulkUpdateListener.NONE);
+
+        //then - 이미 커밋된 청크는 다시 증가시키지 않는다.
+        assertThat(result.getUpdated()).isEqualTo(4);
+        assertThat(memberRepository.findAll()).extracting("age").containsOnly(11);
+    }
+
+    @Test
+    public void refreshesOnlyUpdatedMembersAndKeepsCallerChanges() {
+        //given - 대상(20세), 대상 아님(10세) 모두 2차 캐시에 올려둔다.
+        Long targetId = memberRepository.save(new Member("bulkTarget", 20)).getId();
+        Long otherId = memberRepository.save(new Member("bulkOther", 10)).getId();
+        memberRepository.findById(targetId);
+        memberRepository.findById(otherId);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Member target = em.find(Member.class, targetId);
+            Member other = em.find(Member.class, otherId);
+            target.setUserName("renamedTarget"); // 아직 flush 전
+            target.setAge(25);                   // 나이 +5 (flush 전)
+            other.setUserName("renamedOther");
+
+            //when
+            bulkUpdateService.bulkAgePlus(20, 10);
+
+            //then - 변경된 회원만 DB 값(나이)으로 다시 읽고, 호출자의 변경은 그대로 (나이는 증감분으로 : 20 + 1 + 5)
+            assertThat(em.contains(target)).isTrue();
+            assertThat(target.getAge()).isEqualTo(26);
+            assertThat(target.getUserName()).isEqualTo("renamedTarget");
+            assertThat(em.contains(other)).isTrue();
+            assertThat(other.getAge()).isEqualTo(10);
+            assertThat(other.getUserName()).isEqualTo("renamedOther");
+            assertThat(entityManagerFactory.getCache().contains(Member.class, otherId)).isTrue();
+        });
+
+        //then - 커밋 후 (version도 맞춰져서 낙관적 락 충돌 없음)
+        assertThat(memberRepository.findById(targetId)).hasValueSatisfying(member -> {
+            assertThat(member.getAge()).isEqualTo(26);
+            assertThat(member.getUserName()).isEqualTo("renamedTarget");
+        });
+        assertThat(memberRepository.findById(otherId).get().getUserName()).isEqualTo("renamedOther");
+    }
+}
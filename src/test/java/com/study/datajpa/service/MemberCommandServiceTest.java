@@ -0,0 +1,116 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 여러 스레드가 각자 트랜잭션을 커밋해야 하므로 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest
+class MemberCommandServiceTest {
+
+    @Autowired
+    MemberCommandService commandService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void concurrentAgeUpdatesAreNotLost() throws Exception {
+        //given
+        Long memberId = memberRepository.save(new Member("member1", 0)).getId();
+        int threads = 8;
+        int updatesPerThread = 50;
+
+        //when - 같은 회원의 나이를 동시에 +1
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger exhausted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    try {
+                        commandService.addAge(memberId, 1);
+                        succeeded.incrementAndGet();
+                    } catch (OptimisticLockingFailureException e) {
+                        exhausted.incrementAndGet(); // 재시도 횟수를 다 쓴 경우 - 반영되지 않아야 한다.
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        //then - 성공한 update는 하나도 유실되지 않는다.
+        Member member = memberRepository.findById(memberId).get();
+        assertThat(succeeded.get() + exhausted.get()).isEqualTo(threads * updatesPerThread);
+        assertThat(succeeded.get()).isPositive();
+        assertThat(member.getAge()).isEqualTo(succeeded.get());
+        assertThat(member.getVersion()).isEqualTo(succeeded.get());
+    }
+
+    @Test
+    public void changeTeamDoesNotLoadMembers() {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team teamA = teamRepository.save(new Team("teamA"));
+            Team teamB = teamRepository.save(new Team("teamB"));
+            Member member = memberRepository.save(new Member("member1", 10, teamA));
+            memberRepository.save(new Member("member2", 10, teamB));
+            return new Long[]{member.getId(), teamB.getId()};
+        });
+
+        //when
+        commandService.changeTeam(ids[0], ids[1]);
+
+        //then
+        tx.executeWithoutResult(status -> {
+            Team teamB = teamRepository.findById(ids[1]).get();
+            Member member = memberRepository.findById(ids[0]).get();
+            member.changeTeam(teamB);
+            assertThat(Hibernate.isInitialized(teamB.getMembers())).isFalse();
+            assertThat(teamB.getMembers()).extracting(Member::getUserName)
+                    .containsExactlyInAnyOrder("member1", "member2");
+        });
+    }
+}
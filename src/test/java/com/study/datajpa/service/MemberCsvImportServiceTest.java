@@ -0,0 +1,77 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 배치마다 트랜잭션을 커밋하므로 테스트 트랜잭션 없이 실행한다.
+@SpringBootTest(properties = {"app.import.batch-size=2", "app.import.queue-capacity=1"})
+class MemberCsvImportServiceTest {
+
+    @Autowired
+    MemberCsvImportService importService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.findAll().forEach(teamRepository::delete));
+    }
+
+    @Test
+    public void importMembers(@TempDir Path dir) throws IOException {
+        //given - teamA는 이미 있고 teamB는 새로 만들어야 한다. 나이가 숫자가 아니거나 int 범위를 넘는 줄은 건너뛴다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                teamRepository.save(new Team("teamA")));
+        Path csv = dir.resolve("members.csv");
+        Files.write(csv, List.of(
+                "userName,age,teamName",
+                "member1,10,teamA",
+                "member2,20,teamB",
+                "member3,x,teamA",
+                "member6,4294967306,teamA",
+                "member4,30,teamB",
+                "member5,40,"), StandardCharsets.UTF_8);
+
+        //when
+        CsvImportResult result = importService.importMembers(csv);
+
+        //then
+        assertThat(result.getRows()).isEqualTo(4);
+        assertThat(result.getSkipped()).isEqualTo(2);
+        assertThat(result.getTeamsCreated()).isEqualTo(1);
+        assertThat(teamRepository.count()).isEqualTo(2);
+
+        List<Member> members = memberRepository.findMemberFetchJoin();
+        assertThat(members).extracting(Member::getUserName)
+                .containsExactlyInAnyOrder("member1", "member2", "member4", "member5");
+        assertThat(members).filteredOn(m -> m.getUserName().equals("member4"))
+                .extracting(m -> m.getTeam().getName()).containsExactly("teamB");
+        assertThat(memberRepository.findByUsername("member5").get(0).getTeam()).isNull();
+    }
+}
@@ -0,0 +1,129 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.dto.MemberDto;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.entity.Team;
+import com.study.datajpa.repository.MemberRepository;
+import com.study.datajpa.repository.TeamRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberLookupServiceTest {
+
+    @Autowired
+    MemberLookupService lookupService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void invalidateOnUsernameChange() {
+        //given
+        Member member = memberRepository.save(new Member("hot", 10));
+        em.flush();
+        assertThat(lookupService.findByUsername("hot")).containsExactly(member);
+
+        //when - username 변경이 flush 되면 예전 username 캐시가 무효화된다.
+        member.setUserName("cold");
+        em.flush();
+
+        //then
+        assertThat(lookupService.findByUsername("hot")).isEmpty();
+        assertThat(lookupService.findMemberByUsername("cold")).isEqualTo(member);
+    }
+
+    @Test
+    public void invalidateDtoOnChangeTeam() {
+        //given
+        Team teamA = teamRepository.save(new Team("teamA"));
+        Team teamB = teamRepository.save(new Team("teamB"));
+        Member member = memberRepository.save(new Member("member1", 10, teamA));
+        em.flush();
+        assertThat(lookupService.findDtoById(member.getId())).map(MemberDto::getTeamname).contains("teamA");
+
+        //when
+        member.changeTeam(teamB);
+        em.flush();
+
+        //then
+        assertThat(lookupService.findDtoById(member.getId())).map(MemberDto::getTeamname).contains("teamB");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void uncommittedMembersAreNotCached() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            //given - flush 했지만 커밋 전
+            Member member = memberRepository.saveAndFlush(new Member("uncommittedLookup", 10));
+
+            //then - 자기 트랜잭션에서는 보인다.
+            assertThat(lookupService.findByUsername("uncommittedLookup")).containsExactly(member);
+            assertThat(lookupService.findDtoById(member.getId())).isPresent();
+
+            //then - 다른 트랜잭션(스레드)에는 캐시를 거쳐도 보이지 않는다.
+            assertThat(CompletableFuture.supplyAsync(() -> lookupService.findByUsername("uncommittedLookup")).join()).isEmpty();
+            assertThat(CompletableFuture.supplyAsync(() -> lookupService.findDtoById(member.getId())).join()).isEmpty();
+            status.setRollbackOnly();
+        });
+
+        //then - 롤백 후
+        assertThat(lookupService.findByUsername("uncommittedLookup")).isEmpty();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void loadsIntoCacheOnlyOutsideTransactions() {
+        //given - 커밋된 회원
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = tx.execute(status -> memberRepository.save(new Member("lookupOutsideTx", 10)).getId());
+        try {
+            //when - 트랜잭션 안에서 조회
+            double loads = dtoLoads();
+            assertThat(tx.execute(status -> lookupService.findDtoById(id))).isPresent();
+
+            //then - 캐시에 로딩하지 않는다.(호출한 트랜잭션에서 조회)
+            assertThat(dtoLoads()).isEqualTo(loads);
+
+            //when - 트랜잭션 밖에서 조회
+            assertThat(lookupService.findDtoById(id)).isPresent();
+
+            //then - 캐시에 로딩하고, 이후 읽기 전용 트랜잭션에서는 캐시를 쓴다.
+            assertThat(dtoLoads()).isEqualTo(loads + 1);
+            TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+            readOnlyTx.setReadOnly(true);
+            assertThat(readOnlyTx.execute(status -> lookupService.findDtoById(id))).isPresent();
+            assertThat(dtoLoads()).isEqualTo(loads + 1);
+        } finally {
+            tx.executeWithoutResult(status -> memberRepository.deleteById(id));
+        }
+    }
+
+    private double dtoLoads() {
+        return meterRegistry.get("cache.load").tags("cache", "member.dto", "result", "success").functionCounter().count();
+    }
+}
@@ -0,0 +1,101 @@
+package com.study.datajpa.service;
+
+import com.study.datajpa.dto.MemberSuggestion;
+import com.study.datajpa.entity.Member;
+import com.study.datajpa.repository.MemberRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 인덱스는 커밋 후 반영되므로 테스트 트랜잭션 없이 실행한다. 병합(compact)도 확인하도록 threshold를 작게 둔다.
+@SpringBootTest(properties = "app.member-search.compact-threshold=3")
+class MemberSearchServiceTest {
+
+    @Autowired
+    MemberSearchService searchService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAllInBatch();
+        searchService.rebuild(); // 벌크 삭제는 이벤트가 없다.
+    }
+
+    @Test
+    public void prefixSearchFollowsChanges() {
+        //given - 적재 후 추가된 회원은 overlay -> threshold를 넘으면 snapshot으로 병합
+        memberRepository.save(new Member("kim", 10));
+        searchService.rebuild();
+        Member kimA = memberRepository.save(new Member("kimA", 20));
+        memberRepository.save(new Member("kimB", 30));
+        memberRepository.save(new Member("lee", 40));
+        memberRepository.save(new Member("ki", 50));
+
+        //then - userName 순, limit 건
+        assertThat(names(searchService.search("kim", 10))).containsExactly("kim", "kimA", "kimB");
+        assertThat(names(searchService.search("ki", 2))).containsExactly("ki", "kim");
+        assertThat(searchService.search("park", 10)).isEmpty();
+
+        //when - 이름 변경, 삭제
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                memberRepository.findById(kimA.getId()).get().setUserName("leeA"));
+        memberRepository.deleteById(memberRepository.findByUsername("kimB").get(0).getId());
+
+        //then
+        assertThat(names(searchService.search("kim", 10))).containsExactly("kim");
+        assertThat(searchService.search("lee", 10)).extracting(MemberSuggestion::getId)
+                .contains(kimA.getId());
+    }
+
+    @Test
+    public void compactsInBackground() throws InterruptedException {
+        //given - threshold(3)를 넘는 변경
+        searchService.rebuild();
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member("park" + i, 10));
+        }
+
+        //then - 병합은 별도 스레드에서 끝나고, 그동안의 변경도 남아 있다.
+        for (int i = 0; i < 100 && overlaySize() >= 3; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(overlaySize()).isLessThan(3);
+        assertThat(names(searchService.search("park", 10)))
+                .containsExactly("park0", "park1", "park2", "park3", "park4");
+    }
+
+    @Test
+    public void rolledBackInsertIsNotIndexed() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.save(new Member("rollback", 10));
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(searchService.search("rollback", 10)).isEmpty();
+    }
+
+    private double overlaySize() {
+        return meterRegistry.get("member.search.index.overlay").gauge().value();
+    }
+
+    private static List<String> names(List<MemberSuggestion> suggestions) {
+        return suggestions.stream().map(MemberSuggestion::getUserName).collect(java.util.stream.Collectors.toList());
+    }
+}